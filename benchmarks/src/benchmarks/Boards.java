@@ -0,0 +1,110 @@
+package benchmarks;
+
+import java.util.Random;
+
+import logic.gameobjects.Cell;
+import logic.gameobjects.Graph;
+import logic.gameobjects.RoomIndex;
+
+/**
+ * Random boards for the benchmarks, generated from a seed so every run measures the same boards.
+ */
+final class Boards {
+    /**
+     * Rooms are split until they have at most this many cells.
+     */
+    private static final int MAX_ROOM_SIZE = 6;
+
+    private Boards() {}
+
+    /**
+     * A board of rectangular rooms with clues in most rooms, taken from a planted coloring without adjacent black cells.
+     * No cell is painted.
+     */
+    static Graph level(int size, long seed) {
+        Random random = new Random(seed);
+        Graph graph = new Graph(size, size);
+        split(graph, 0, 0, size, size, random);
+
+        boolean[] black = plantedBlack(graph, random);
+        RoomIndex rooms = graph.getRooms();
+        for(int r = 0; r < rooms.getRoomCount(); r++) {
+            if(random.nextInt(10) < 3) continue;
+            int count = 0;
+            for(int i = 0; i < rooms.size(r); i++) {
+                if(black[rooms.member(r, i)]) count++;
+            }
+            graph.setBlackCount(rooms.member(r, 0), count);
+        }
+        return graph;
+    }
+
+    /**
+     * A level in the middle of a game: about half of the cells painted with the colors of the planted coloring,
+     * and the neighbour flags of the edges set as the game sets them.
+     */
+    static Graph midGame(int size, long seed) {
+        Graph graph = level(size, seed);
+        Random random = new Random(seed + 1);
+        boolean[] black = plantedBlack(graph, new Random(seed));
+        for(int i = 0; i < graph.N; i++) {
+            if(random.nextBoolean()) graph.getCell(i).state = black[i] ? Cell.State.BLACK : Cell.State.WHITE;
+        }
+        for(int row = 0; row < size; row++) {
+            for(int column = 0; column < size; column++) {
+                int cell = graph.getCellIndex(row, column);
+                if(column < size - 1) setNeighbourFlags(graph, cell, cell + 1);
+                if(row < size - 1) setNeighbourFlags(graph, cell, cell + size);
+            }
+        }
+        return graph;
+    }
+
+    private static void setNeighbourFlags(Graph graph, int cell1, int cell2) {
+        int edge = graph.edgeIndex(cell1, cell2);
+        Cell.State state1 = graph.getCell(cell1).state;
+        Cell.State state2 = graph.getCell(cell2).state;
+        int flags = graph.getEdgeFlags(edge) & Graph.WALL;
+        if(state1 == Cell.State.BLACK && state2 == Cell.State.BLACK) flags |= Graph.BLACK_NEIGHBOURS;
+        if(state1 == Cell.State.WHITE && state2 == Cell.State.WHITE) flags |= Graph.WHITE_NEIGHBOURS;
+        graph.setEdgeFlags(edge, flags);
+    }
+
+    /**
+     * About a quarter of the cells black, none of them adjacent. Connectivity of white cells is not ensured.
+     */
+    private static boolean[] plantedBlack(Graph graph, Random random) {
+        boolean[] black = new boolean[graph.N];
+        for(int i = 0; i < graph.N; i++) {
+            int row = i / graph.width;
+            int column = i % graph.width;
+            boolean free = (row == 0 || !black[i - graph.width]) && (column == 0 || !black[i - 1]);
+            black[i] = free && random.nextInt(3) == 0;
+        }
+        return black;
+    }
+
+    /**
+     * Splits a rectangle of cells into two by a wall, until the parts are small enough.
+     */
+    private static void split(Graph graph, int x, int y, int w, int h, Random random) {
+        if(w * h <= MAX_ROOM_SIZE) return;
+        if(w >= h) {
+            int s = 1 + random.nextInt(w - 1);
+            for(int i = y; i < y + h; i++) {
+                int cell = graph.getCellIndex(i, x + s - 1);
+                graph.setEdgeFlags(graph.edgeIndex(cell, cell + 1), Graph.WALL);
+            }
+            split(graph, x, y, s, h, random);
+            split(graph, x + s, y, w - s, h, random);
+        } else {
+            int s = 1 + random.nextInt(h - 1);
+            for(int j = x; j < x + w; j++) {
+                int cell = graph.getCellIndex(y + s - 1, j);
+                graph.setEdgeFlags(graph.edgeIndex(cell, cell + graph.width), Graph.WALL);
+            }
+            split(graph, x, y, w, s, random);
+            split(graph, x, y + s, w, h - s, random);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logic.Game;
+
+/**
+ * A click on a board in the middle of a game, including the rule checks it triggers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GameBenchmark {
+    /**
+     * Width and height of the board.
+     */
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    /**
+     * false checks the whole board after every click.
+     */
+    @Param({"true", "false"})
+    public boolean incremental;
+
+    private int[] clicks;
+    private int nextClick;
+    private Game game;
+
+    @Setup(Level.Trial)
+    public void setUpClicks() {
+        clicks = new int[size * size];
+        for(int i = 0; i < clicks.length; i++) clicks[i] = i;
+        Random random = new Random(7);
+        for(int i = clicks.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = clicks[i];
+            clicks[i] = clicks[j];
+            clicks[j] = t;
+        }
+    }
+
+    /**
+     * A new game every iteration, so the undo journal doesn't grow without bound.
+     */
+    @Setup(Level.Iteration)
+    public void setUpGame() {
+        game = new Game(Boards.midGame(size, 42));
+        game.incremental = incremental;
+        nextClick = 0;
+    }
+
+    /**
+     * Clicks the cells in a random order, so every cell goes through all of its states.
+     */
+    @Benchmark
+    public boolean cellClicked() {
+        int cell = clicks[nextClick];
+        if(++nextClick == clicks.length) nextClick = 0;
+        game.cellClicked(cell / size, cell % size);
+        return game.hasEnded();
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import logic.gameobjects.Cell;
+import logic.gameobjects.Graph;
+import logic.gameobjects.IntList;
+
+/**
+ * Construction of graphs, flood fills and iteration over edges.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphBenchmark {
+    /**
+     * Width and height of the board.
+     */
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private Graph graph;
+    private int whiteCell;
+    private final IntList filled = new IntList();
+    private int nextCell = 0;
+
+    @Setup
+    public void setUp() {
+        graph = Boards.midGame(size, 42);
+        Cell white = graph.findAny(Cell::white);
+        whiteCell = white == null ? 0 : graph.getCellIndex(white);
+    }
+
+    @Benchmark
+    public Graph newGraph() {
+        return new Graph(size, size);
+    }
+
+    /**
+     * Fills a room, starting from a different cell each time.
+     */
+    @Benchmark
+    public IntList floodFillRoom() {
+        nextCell = (nextCell + 7919) % graph.N;
+        return graph.floodFill(nextCell, filled);
+    }
+
+    /**
+     * Fills the white cells connected to a white cell, as the connectivity check does.
+     */
+    @Benchmark
+    public IntList conditionalFloodFillWhite() {
+        return graph.conditionalFloodFill(whiteCell, Graph.WHITE_NEIGHBOURS, Graph.WHITE_NEIGHBOURS, filled);
+    }
+
+    @Benchmark
+    public void forEachEdge(Blackhole blackhole) {
+        int[] walls = new int[1];
+        graph.forEachEdge(e -> {
+            if(e.isWall) walls[0]++;
+        });
+        blackhole.consume(walls[0]);
+    }
+}
@@ -0,0 +1,85 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logic.Core;
+import logic.gameobjects.Graph;
+
+/**
+ * Saving a level to and loading all levels from libraries of different sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+    /**
+     * Number of levels in the library.
+     */
+    @Param({"10", "1000", "100000"})
+    public int levels;
+
+    /**
+     * Width and height of the levels.
+     */
+    @Param({"10", "30"})
+    public int size;
+
+    private File directory;
+    private File file;
+    private Graph graph;
+
+    /**
+     * Writes the library once. Saving appends to it, which takes the same time however many levels it has,
+     * so the levels saved during the trial don't change the result.
+     */
+    @Setup(Level.Trial)
+    public void setUpLibrary() throws IOException {
+        directory = Files.createTempDirectory("heyawake-bench").toFile();
+        file = new File(directory, "levels.dat");
+        List<Graph> graphs = new ArrayList<>(levels);
+        // A few distinct levels repeated, generating 100000 boards would dominate the setup
+        for(int i = 0; i < levels; i++) graphs.add(Boards.level(size, i % 64));
+        Core.saveGraphs(file, graphs);
+        graph = Boards.level(size, -1);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLibrary() {
+        File[] files = directory.listFiles();
+        if(files != null) for(File f : files) f.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public void saveGraph() {
+        Core.saveGraphs(file, Collections.singletonList(graph));
+    }
+
+    @Benchmark
+    public List<Graph> loadGraphs() {
+        return Core.loadGraphs(file);
+    }
+}
@@ -1,7 +1,21 @@
+import java.util.Arrays;
+
 import gui.Window;
+import logic.batch.BatchRunner;
+import logic.format.LevelConverter;
+import logic.metrics.Metrics;
 
 public class App {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        Metrics.configure();
+        if(args.length > 0 && args[0].equals("batch")) {
+            BatchRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if(args.length > 0 && (args[0].equals("import") || args[0].equals("export"))) {
+            LevelConverter.main(args);
+            return;
+        }
         Window window = new Window();
     }
 }
\ No newline at end of file
@@ -1,9 +1,11 @@
 package gui;
 
+import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
@@ -11,7 +13,11 @@ import java.awt.Rectangle;
 import java.awt.Stroke;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.swing.JPanel;
 
@@ -20,13 +26,22 @@ import logic.gameobjects.Graph;
 
 /**
  * Class for drawing the contents of a board on the screen.
+ *
+ * Playing and editing canvases show a view of the board which can be zoomed and panned, see enableZoomAndPan.
+ * The visible part of the board is drawn into a buffer which is kept between frames. The grid and the walls
+ * in the view are drawn once into a separate layer, and clue numbers once per cell size. On every paint the
+ * visible cells whose state, errors or clue changed since the last paint are drawn again into the buffer and
+ * the buffer is copied to the screen, so the cost of a click depends on the number of changed cells and the
+ * size of the view, not on the size of the board. The whole view is drawn again when it moves or walls in it change.
  */
 public  class Canvas extends JPanel {
     protected int SIDELENGTH = 600;
-    protected int CELLSIZE = SIDELENGTH / 6;
+    protected int CELLSIZE = SIDELENGTH / Graph.DEFAULT_SIZE;
     static final Color bgColor = new Color(100,100,100); 
     static final Color green = new Color(0,200,0); 
     static final Color errorRed = new Color(255, 0,0, 150); 
+    static final Color lineColor = new Color(0,0,0);
+    static final BasicStroke wallStroke = new BasicStroke(3);
 
     static final EnumMap<Cell.State, Color> colors = new EnumMap<>(Cell.State.class); 
     static {
@@ -36,15 +51,28 @@ public  class Canvas extends JPanel {
     }
 
     /**
-     * Set to true if selected in level selector.
+     * Cell sizes reachable by zooming.
      */
-    boolean selected = false;
+    static final int MIN_CELLSIZE = 4;
+    static final int MAX_CELLSIZE = 200;
+    /**
+     * Boards which would get smaller cells when fitted into the view are shown at this size and panned instead.
+     */
+    static final int MIN_FIT_CELLSIZE = 20;
+    static final double ZOOM_STEP = 1.25;
 
     Graph graph;
+    /**
+     * Position of the top left corner of the view on the board in pixels.
+     */
+    protected int viewX = 0;
+    protected int viewY = 0;
+    private int minFitCellSize = 1;
+
     public Canvas(Graph graph) {
         setLayout(new FlowLayout());
         this.graph = graph;
-        CELLSIZE = SIDELENGTH / graph.S;
+        updateCellSize();
         setPreferredSize(new Dimension(SIDELENGTH, SIDELENGTH));
 
         addMouseListener(new ClickListener(this));
@@ -57,22 +85,125 @@ public  class Canvas extends JPanel {
         @Override
         public void mouseClicked(MouseEvent e) {
             canvas.mouseClicked(new Point(e.getX(),e.getY()));
-            repaint();
+            canvas.repaintChanged();
+        }
+    }
+
+    /**
+     * Zooms with the mouse wheel around the mouse, pans by dragging.
+     */
+    class ViewportListener extends MouseAdapter {
+        private Point dragStart;
+
+        @Override
+        public void mousePressed(MouseEvent e) {
+            dragStart = e.getPoint();
+        }
+
+        @Override
+        public void mouseDragged(MouseEvent e) {
+            if(dragStart == null) return;
+            pan(dragStart.x - e.getX(), dragStart.y - e.getY());
+            dragStart = e.getPoint();
         }
+
+        @Override
+        public void mouseWheelMoved(MouseWheelEvent e) {
+            zoom(e.getWheelRotation(), e.getPoint());
+        }
+    }
+
+    /**
+     * Lets the user zoom and pan, and keeps cells of large boards big enough to click.
+     * Called by the constructors of canvases which are played or edited.
+     */
+    protected void enableZoomAndPan() {
+        minFitCellSize = MIN_FIT_CELLSIZE;
+        updateCellSize();
+        ViewportListener listener = new ViewportListener();
+        addMouseListener(listener);
+        addMouseMotionListener(listener);
+        addMouseWheelListener(listener);
+    }
+
+    /**
+     * Moves the view by the given number of pixels, keeping it on the board.
+     */
+    protected void pan(int dx, int dy) {
+        int x = viewX, y = viewY;
+        viewX += dx;
+        viewY += dy;
+        clampView();
+        if(x != viewX || y != viewY) repaint();
+    }
+
+    /**
+     * Changes the cell size by steps of ZOOM_STEP, keeping the board position under p in place.
+     * @param steps positive to zoom out, negative to zoom in
+     * @param p point on the canvas
+     */
+    protected void zoom(int steps, Point p) {
+        int size = (int)Math.round(CELLSIZE * Math.pow(ZOOM_STEP, -steps));
+        if(size == CELLSIZE) size += steps < 0 ? 1 : -1;
+        size = Math.min(MAX_CELLSIZE, Math.max(Math.min(MIN_CELLSIZE, CELLSIZE), size));
+        if(size == CELLSIZE) return;
+        viewX = (int)((long)(p.x + viewX) * size / CELLSIZE) - p.x;
+        viewY = (int)((long)(p.y + viewY) * size / CELLSIZE) - p.y;
+        CELLSIZE = size;
+        clampView();
+        repaint();
+    }
+
+    private void clampView() {
+        viewX = Math.max(0, Math.min(viewX, boardWidth() - getWidth()));
+        viewY = Math.max(0, Math.min(viewY, boardHeight() - getHeight()));
+    }
+
+    /**
+     * Repaints the area of the cells which changed since they were last drawn.
+     * Called after every click; subclasses repaint more if something outside of the cells changed.
+     */
+    protected void repaintChanged() {
+        Rectangle changed = updateBuffer();
+        if(changed != null) repaint(changed);
     }
     
     @Override
     public void setSize(Dimension d) {
         super.setSize(d);
         SIDELENGTH = (int)d.getWidth();
-        CELLSIZE = SIDELENGTH / graph.S;
+        updateCellSize();
     }
 
     @Override
     public void setPreferredSize(Dimension preferredSize) {
         super.setPreferredSize(preferredSize);
         SIDELENGTH = (int)preferredSize.getWidth();
-        CELLSIZE = SIDELENGTH / graph.S;
+        updateCellSize();
+    }
+
+    /**
+     * The longer side of the board fits into SIDELENGTH, unless cells would get smaller than the minimum,
+     * and the view goes back to the top left corner.
+     */
+    protected void updateCellSize() {
+        CELLSIZE = Math.max(minFitCellSize, SIDELENGTH / Math.max(graph.width, graph.height));
+        viewX = 0;
+        viewY = 0;
+    }
+
+    /**
+     * @return width of the board in pixels
+     */
+    protected int boardWidth() {
+        return CELLSIZE * graph.width;
+    }
+
+    /**
+     * @return height of the board in pixels
+     */
+    protected int boardHeight() {
+        return CELLSIZE * graph.height;
     }
 
     /**
@@ -84,12 +215,22 @@ public  class Canvas extends JPanel {
     } 
 
     /**
-     * @param p point on board
-     * @return true if point is on the board
+     * @param p point on the canvas
+     * @return the point on the board under it, in pixels from the top left corner of the board
+     */
+    protected Point canvasPositionToBoardPosition(Point p) {
+        return new Point(p.x + viewX, p.y + viewY);
+    }
+
+    /**
+     * @param p point on the canvas
+     * @return true if point is on a visible part of the board
      */
     protected boolean pointOnBoard(Point p) {
-        return p.x >= 0 && p.x < SIDELENGTH  
-            && p.y >= 0 && p.y < SIDELENGTH;
+        Point b = canvasPositionToBoardPosition(p);
+        return p.x >= 0 && p.x < getWidth() && p.y >= 0 && p.y < getHeight()
+            && b.x >= 0 && b.x < boardWidth()
+            && b.y >= 0 && b.y < boardHeight();
     }
 
     /**
@@ -98,90 +239,266 @@ public  class Canvas extends JPanel {
      * @return Cell coordinate in (row, column) format
      */
     protected Point canvasPositionToCellCoordinate(Point p) {
-        int row = (int)Math.floor(p.getY() / CELLSIZE);
-        int column = (int)Math.floor(p.getX() / CELLSIZE);
-        return new Point(row, column);
+        Point b = canvasPositionToBoardPosition(p);
+        return new Point(Math.floorDiv(b.y, CELLSIZE), Math.floorDiv(b.x, CELLSIZE));
     } 
 
     @Override
     public void paint(Graphics g) {
-        //this.setSize(SIDELENGTH,SIDELENGTH); // Must set size here
         super.paint(g);
-        Graphics2D g2 = (Graphics2D) g;
+        updateBuffer();
+        // The buffer is as large as the canvas, the board may end before it
+        int width = Math.min(buffer.getWidth(), boardWidth() - viewX);
+        int height = Math.min(buffer.getHeight(), boardHeight() - viewY);
+        g.drawImage(buffer, 0, 0, width, height, 0, 0, width, height, null);
+    }
 
-        g2.setColor(bgColor);
-        g2.fillRect(0,0, SIDELENGTH, SIDELENGTH);
-        g2.setColor(new Color(0,0,0));
-        paintCells(g2);
-        paintGrid(g2);
-        paintWalls(g2);
+    /**
+     * The visible part of the board as it was last drawn, as large as the canvas.
+     */
+    private BufferedImage buffer;
+    /**
+     * The grid and the walls in the view, transparent elsewhere. Drawn over every cell drawn into the buffer.
+     */
+    private BufferedImage wallLayer;
+    /**
+     * State, errors and clue of every cell as drawn in the buffer, see cellKey. Only valid for visible cells.
+     */
+    private int[] drawnCells;
+    /**
+     * Wall flags of the edges as drawn in the wall layer, only valid for visible edges.
+     * Other edge flags change while playing and aren't drawn.
+     */
+    private byte[] drawnEdges;
+    /**
+     * View and cell size the buffer was drawn with.
+     */
+    private int drawnViewX, drawnViewY, drawnCellSize;
+    /**
+     * Images of clue numbers at the current cell size, by clue * 2 + 1 if the number has an error.
+     */
+    private final Map<Integer, BufferedImage> glyphs = new HashMap<>();
+    private int glyphSize;
 
-        if(selected) {
-            g2.setColor(new Color(0,255,0, 100));
-            g2.fillRect(0,0, SIDELENGTH, SIDELENGTH);
-        } 
+    /**
+     * Draws the changed visible cells into the buffer, or all visible cells if the view or walls in it changed.
+     * Only visible cells and edges are looked at, so the cost depends on the size of the canvas, not of the board.
+     * @return the area of the canvas which was drawn, null if nothing changed
+     */
+    private Rectangle updateBuffer() {
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+        boolean redraw = false;
+        if(buffer == null || buffer.getWidth() != width || buffer.getHeight() != height) {
+            buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            wallLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            redraw = true;
+        }
+        if(drawnCells == null) {
+            drawnCells = new int[graph.N];
+            drawnEdges = new byte[graph.getEdgeCount()];
+            redraw = true;
+        }
+        clampView();
+        redraw |= viewX != drawnViewX || viewY != drawnViewY || CELLSIZE != drawnCellSize;
 
-        g2.dispose();
+        int firstRow = viewY / CELLSIZE;
+        int lastRow = Math.min(graph.height - 1, (viewY + height - 1) / CELLSIZE);
+        int firstColumn = viewX / CELLSIZE;
+        int lastColumn = Math.min(graph.width - 1, (viewX + width - 1) / CELLSIZE);
+
+        // Also remembers the walls when everything is drawn anyway
+        redraw |= !wallsDrawn(firstRow, lastRow, firstColumn, lastColumn);
+        if(redraw) {
+            drawnViewX = viewX;
+            drawnViewY = viewY;
+            drawnCellSize = CELLSIZE;
+            Graphics2D g2 = wallLayer.createGraphics();
+            try {
+                g2.setComposite(AlphaComposite.Clear);
+                g2.fillRect(0, 0, width, height);
+                g2.setComposite(AlphaComposite.SrcOver);
+                g2.translate(-viewX, -viewY);
+                g2.setColor(lineColor);
+                paintGrid(g2, firstRow, lastRow, firstColumn, lastColumn);
+                paintWalls(g2, firstRow, lastRow, firstColumn, lastColumn);
+            } finally {
+                g2.dispose();
+            }
+            g2 = buffer.createGraphics();
+            try {
+                g2.translate(-viewX, -viewY);
+                for(int row = firstRow; row <= lastRow; row++) {
+                    for(int column = firstColumn; column <= lastColumn; column++) {
+                        Cell cell = graph.getCell(row, column);
+                        drawnCells[row * graph.width + column] = cellKey(cell);
+                        paintCell(g2, cell);
+                    }
+                }
+                g2.drawImage(wallLayer, viewX, viewY, null);
+            } finally {
+                g2.dispose();
+            }
+            return new Rectangle(0, 0, width, height);
+        }
+
+        Graphics2D g2 = null;
+        int minRow = graph.height, maxRow = -1, minColumn = graph.width, maxColumn = -1;
+        try {
+            for(int row = firstRow; row <= lastRow; row++) {
+                for(int column = firstColumn; column <= lastColumn; column++) {
+                    Cell cell = graph.getCell(row, column);
+                    int key = cellKey(cell);
+                    int i = row * graph.width + column;
+                    if(drawnCells[i] == key) continue;
+                    drawnCells[i] = key;
+                    if(g2 == null) {
+                        g2 = buffer.createGraphics();
+                        g2.translate(-viewX, -viewY);
+                    }
+                    g2.setClip(column * CELLSIZE, row * CELLSIZE, CELLSIZE, CELLSIZE);
+                    paintCell(g2, cell);
+                    g2.drawImage(wallLayer, viewX, viewY, null);
+                    minRow = Math.min(minRow, row);
+                    maxRow = Math.max(maxRow, row);
+                    minColumn = Math.min(minColumn, column);
+                    maxColumn = Math.max(maxColumn, column);
+                }
+            }
+        } finally {
+            if(g2 != null) g2.dispose();
+        }
+        if(maxRow < 0) return null;
+        return new Rectangle(minColumn * CELLSIZE - viewX, minRow * CELLSIZE - viewY,
+                (maxColumn - minColumn + 1) * CELLSIZE, (maxRow - minRow + 1) * CELLSIZE);
     }
 
-    protected void paintGrid(Graphics2D g2) {
-        for(int i = 0; i < 5; i++) {
-            int c = (i+1) * CELLSIZE;
-            g2.drawLine(c,0,c,SIDELENGTH);
-            g2.drawLine(0, c,SIDELENGTH,c);
+    /**
+     * Compares the walls around the given cells with the wall layer and remembers them.
+     * @return true if none of them changed
+     */
+    private boolean wallsDrawn(int firstRow, int lastRow, int firstColumn, int lastColumn) {
+        boolean same = true;
+        for(int row = firstRow; row <= lastRow; row++) {
+            for(int column = Math.max(0, firstColumn - 1); column <= Math.min(graph.width - 2, lastColumn); column++) {
+                int e = graph.verticalEdgeIndex(row, column);
+                byte wall = (byte)(graph.getEdgeFlags(e) & Graph.WALL);
+                if(drawnEdges[e] != wall) same = false;
+                drawnEdges[e] = wall;
+            }
+        }
+        for(int row = Math.max(0, firstRow - 1); row <= Math.min(graph.height - 2, lastRow); row++) {
+            for(int column = firstColumn; column <= lastColumn; column++) {
+                int e = graph.horizontalEdgeIndex(row, column);
+                byte wall = (byte)(graph.getEdgeFlags(e) & Graph.WALL);
+                if(drawnEdges[e] != wall) same = false;
+                drawnEdges[e] = wall;
+            }
         }
+        return same;
     }
 
-    protected Rectangle getCellShape(int row, int column) {
-        return new Rectangle(column * CELLSIZE, row * CELLSIZE, CELLSIZE, CELLSIZE);
+    /**
+     * @return everything that decides how a cell is drawn, packed into an int
+     */
+    private static int cellKey(Cell cell) {
+        return cell.state.ordinal() | (cell.cellError ? 4 : 0) | (cell.numberError ? 8 : 0) | (cell.blackCount + 1) << 4;
+    }
+
+    /**
+     * Paints the whole board without the buffer and the view. Used to render thumbnails, see ThumbnailCache.
+     * @param g2
+     */
+    void paintBoard(Graphics2D g2) {
+        g2.setColor(bgColor);
+        g2.fillRect(0,0, boardWidth(), boardHeight());
+        graph.forEachCell(cell -> paintCell(g2, cell));
+        g2.setColor(lineColor);
+        paintGrid(g2, 0, graph.height - 1, 0, graph.width - 1);
+        paintWalls(g2, 0, graph.height - 1, 0, graph.width - 1);
     }
 
-    protected void paintCells(Graphics2D g2) {
-        final Color savedColor = g2.getColor();
-        g2.setFont(g2.getFont().deriveFont((float)CELLSIZE/3));
+    /**
+     * Paints the grid lines around the given cells, in board coordinates.
+     */
+    protected void paintGrid(Graphics2D g2, int firstRow, int lastRow, int firstColumn, int lastColumn) {
+        int top = firstRow * CELLSIZE;
+        int bottom = (lastRow + 1) * CELLSIZE;
+        int left = firstColumn * CELLSIZE;
+        int right = (lastColumn + 1) * CELLSIZE;
+        for(int i = Math.max(1, firstColumn); i <= Math.min(graph.width - 1, lastColumn + 1); i++) {
+            int c = i * CELLSIZE;
+            g2.drawLine(c, top, c, bottom);
+        }
+        for(int i = Math.max(1, firstRow); i <= Math.min(graph.height - 1, lastRow + 1); i++) {
+            int c = i * CELLSIZE;
+            g2.drawLine(left, c, right, c);
+        }
+    }
 
-        graph.forEachCell(cell -> {
-            g2.setColor(colors.get(cell.state));
-                int i = cell.getRow();
-                int j = cell.getColumn();
-                g2.fill(getCellShape(i, j));
+    protected void paintCell(Graphics2D g2, Cell cell) {
+        int x = cell.getColumn() * CELLSIZE;
+        int y = cell.getRow() * CELLSIZE;
+        // Black is translucent, so the background goes below it rather than what was drawn before
+        g2.setColor(bgColor);
+        g2.fillRect(x, y, CELLSIZE, CELLSIZE);
+        g2.setColor(colors.get(cell.state));
+        g2.fillRect(x, y, CELLSIZE, CELLSIZE);
 
-                
-                if(cell.cellError) {
-                    g2.setColor(errorRed);
-                    g2.fill(getCellShape(i, j));
-                }
+        if(cell.cellError) {
+            g2.setColor(errorRed);
+            g2.fillRect(x, y, CELLSIZE, CELLSIZE);
+        }
 
-                if(cell.numberError) 
-                    g2.setColor(errorRed);
-                else 
-                    g2.setColor(green);
+        if(cell.blackCount != -1) {
+            g2.drawImage(glyph(cell.blackCount, cell.numberError), x, y, null);
+        }
+    }
 
-                if(cell.blackCount != -1) {
-                    g2.drawString(Integer.toString(cell.blackCount), j * CELLSIZE + CELLSIZE / 2, i * CELLSIZE + CELLSIZE / 2);
-                }
+    /**
+     * @return image of a clue number of a cell, with the number where it is drawn in the cell
+     */
+    private BufferedImage glyph(int blackCount, boolean error) {
+        if(glyphSize != CELLSIZE) {
+            glyphs.clear();
+            glyphSize = CELLSIZE;
+        }
+        return glyphs.computeIfAbsent(blackCount * 2 + (error ? 1 : 0), key -> {
+            BufferedImage image = new BufferedImage(CELLSIZE, CELLSIZE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = image.createGraphics();
+            try {
+                Font font = getFont() != null ? getFont() : g2.getFont();
+                g2.setFont(font.deriveFont((float)CELLSIZE/3));
+                g2.setColor(error ? errorRed : green);
+                g2.drawString(Integer.toString(blackCount), CELLSIZE / 2, CELLSIZE / 2);
+            } finally {
+                g2.dispose();
+            }
+            return image;
         });
-
-        g2.setColor(savedColor);
     }
 
-    protected void paintWalls(Graphics2D g2) {
+    /**
+     * Paints the walls around the given cells, in board coordinates.
+     */
+    protected void paintWalls(Graphics2D g2, int firstRow, int lastRow, int firstColumn, int lastColumn) {
         final Stroke savedStroke = g2.getStroke();
-        g2.setStroke(new BasicStroke(3));
-
+        g2.setStroke(wallStroke);
         // It is easier to draw with for loops than with iterateEdges
-        for(int i = 0; i < graph.S; i++) {
-            final int S = graph.S;
-            for(int j = 0; j < S - 1; j++) {
+        for(int i = firstRow; i <= lastRow; i++) {
+            for(int j = Math.max(0, firstColumn - 1); j <= Math.min(graph.width - 2, lastColumn); j++) {
                 // paint vertical edges
-                if(graph.edges.get(i * S + j).get(i * S + j + 1).isWall)
+                if((graph.getEdgeFlags(graph.verticalEdgeIndex(i, j)) & Graph.WALL) != 0)
                     g2.drawLine((j+1) * CELLSIZE, i * CELLSIZE, (j+1) * CELLSIZE, i * CELLSIZE + CELLSIZE);
-                    
+            }
+        }
+        for(int i = firstColumn; i <= lastColumn; i++) {
+            for(int j = Math.max(0, firstRow - 1); j <= Math.min(graph.height - 2, lastRow); j++) {
                 // paint horizontal edges
-                if(graph.edges.get(j * S + i).get(j * S + i + S).isWall) 
+                if((graph.getEdgeFlags(graph.horizontalEdgeIndex(j, i)) & Graph.WALL) != 0) 
                     g2.drawLine(i * CELLSIZE, (j+1) * CELLSIZE, i * CELLSIZE + CELLSIZE, (j+1) * CELLSIZE);
             }
         }
         g2.setStroke(savedStroke);
     }
-}
\ No newline at end of file
+}
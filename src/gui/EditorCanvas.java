@@ -12,6 +12,7 @@ public class EditorCanvas extends Canvas {
     EditorCanvas(Editor editor) {
         super(editor.getGraph());
         this.editor = editor;
+        enableZoomAndPan();
     }
 
     /**
@@ -40,8 +41,9 @@ public class EditorCanvas extends Canvas {
      */
     protected Pair getClickedEdge(Point clickPos) {
         // Coordinates relative to top left of Cell
-        int y = clickPos.x % CELLSIZE;
-        int x = clickPos.y % CELLSIZE;
+        Point boardPos = canvasPositionToBoardPosition(clickPos);
+        int y = boardPos.x % CELLSIZE;
+        int x = boardPos.y % CELLSIZE;
 
         // Distances from edges
         int dtop = y;
@@ -86,8 +88,8 @@ public class EditorCanvas extends Canvas {
         Point clickedCell = canvasPositionToCellCoordinate(clickPos);
         Point closestNeighbour = new Point(clickedCell.x + offsetX, clickedCell.y + offsetY);
 
-        if(closestNeighbour.getX() < 0 || closestNeighbour.getX() >= graph.S 
-        || closestNeighbour.getY() < 0 || closestNeighbour.getY() >= graph.S) return null;
+        if(closestNeighbour.getX() < 0 || closestNeighbour.getX() >= graph.height 
+        || closestNeighbour.getY() < 0 || closestNeighbour.getY() >= graph.width) return null;
         
         int clickedCellIndex = graph.getCellIndex(clickedCell.x, clickedCell.y);
         int closestNeighbourIndex = graph.getCellIndex(closestNeighbour.x, closestNeighbour.y);
@@ -1,35 +1,145 @@
 package gui;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
 
 import logic.Game;
+import logic.solver.Hint;
+import logic.solver.HintEngine;
+import logic.solver.Puzzle;
 
 public class GameCanvas extends Canvas {
+    static final BasicStroke disconnectedStroke = new BasicStroke(4);
+    static final BasicStroke hintStroke = new BasicStroke(3);
+    static final Color hintColor = new Color(255, 200, 0);
+    /**
+     * Time a hint search may take before it gives up.
+     */
+    static final long HINT_TIME_BUDGET_MS = 2000;
+    /**
+     * Hints are searched on this thread, one at a time, so the event dispatch thread never waits for them.
+     */
+    private static final ExecutorService hintExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "hint-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     Game game;
+    /**
+     * Whether the frame and the end screen were shown in the last paint.
+     */
+    private boolean paintedDisconnected, paintedEnded;
+
+    /**
+     * Rules of the board for hint searches, built on the first request. Walls and clues don't change in a game.
+     */
+    private Puzzle puzzle;
+    private Future<?> hintSearch;
+    /**
+     * Counts hint requests and cancellations, so results of cancelled searches are dropped.
+     */
+    private int hintRequest = 0;
+    /**
+     * The hint shown on the board, null if none.
+     */
+    private Hint hint;
+
     public GameCanvas(Game game) {
         super(game.getGraph());
         this.game = game;
+        enableZoomAndPan();
     }
 
     @Override
     protected void mouseClicked(Point p) {
         if(!pointOnBoard(p)) return; 
+        cancelHint();
         Point clickedCell = canvasPositionToCellCoordinate(p);
         game.cellClicked(clickedCell.x,clickedCell.y);
-        repaint();
     }
-    
+
+    /**
+     * Searches a hint for the cells painted now in the background and shows it on the board when it is found.
+     * Cancels the previous search.
+     * @param listener called on the event dispatch thread with the hint, or null if none was found
+     */
+    void requestHint(Consumer<Hint> listener) {
+        cancelHint();
+        if(puzzle == null) puzzle = new Puzzle(graph);
+        Puzzle puzzle = this.puzzle;
+        byte[] colors = HintEngine.colorsOf(graph);
+        int request = hintRequest;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HINT_TIME_BUDGET_MS);
+        hintSearch = hintExecutor.submit(() -> {
+            Hint found = new HintEngine(puzzle).findHint(colors, deadline);
+            if(Thread.currentThread().isInterrupted()) return;
+            SwingUtilities.invokeLater(() -> {
+                if(request != hintRequest) return;
+                hintSearch = null;
+                hint = found;
+                repaint();
+                listener.accept(found);
+            });
+        });
+    }
+
+    /**
+     * Stops the hint search and removes the hint from the board. Called when a cell changes.
+     */
+    void cancelHint() {
+        hintRequest++;
+        if(hintSearch != null) {
+            hintSearch.cancel(true);
+            hintSearch = null;
+        }
+        if(hint != null) {
+            hint = null;
+            repaint();
+        }
+    }
+
+    /**
+     * The frame and the end screen cover the whole board, so everything is repainted when they appear or disappear.
+     */
+    @Override
+    protected void repaintChanged() {
+        if(paintedDisconnected != game.areWhiteCellsInterconnected() && paintedEnded == game.hasEnded()) super.repaintChanged();
+        else repaint();
+    }
+
     @Override
     public void paint(Graphics g) {
         super.paint(g);
-        if(game.hasEnded()) {
-            // Not drawing... ??
+        paintedDisconnected = !game.areWhiteCellsInterconnected();
+        paintedEnded = game.hasEnded();
+        if(hint != null) {
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setColor(hintColor);
+            g2.setStroke(hintStroke);
+            g2.drawRect(hint.column * CELLSIZE - viewX + 2, hint.row * CELLSIZE - viewY + 2, CELLSIZE - 4, CELLSIZE - 4);
+        }
+        if(paintedDisconnected) {
+            // Frame the board while white cells are disconnected
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setColor(errorRed);
+            g2.setStroke(disconnectedStroke);
+            g2.drawRect(2 - viewX, 2 - viewY, boardWidth() - 4, boardHeight() - 4);
+        }
+        if(paintedEnded) {
             Graphics2D g2 = (Graphics2D) g;
             g2.setColor(new Color(255,255,255));
-            g2.fillRect(0, 0, SIDELENGTH, SIDELENGTH);
+            g2.fillRect(0, 0, boardWidth() - viewX, boardHeight() - viewY);
         }
     }
 
@@ -0,0 +1,180 @@
+package gui;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import javax.swing.AbstractListModel;
+import javax.swing.DefaultListSelectionModel;
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+
+import logic.gameobjects.Graph;
+import logic.store.LevelLibrary;
+
+/**
+ * Horizontal strip of the levels of a library, which stays fast with any number of levels.
+ *
+ * The list only holds level indices and has a fixed cell size, so Swing never measures or creates anything per level.
+ * Visible cells are painted by one LevelThumbnail. Levels are decoded when they are painted, and thumbnails
+ * which are not in memory are loaded on a background thread, newest request first, skipping levels
+ * which were scrolled out of view before their turn. Their cells are repainted when the image is ready.
+ */
+public class LevelSelector extends JScrollPane {
+    private static final int GAP = 20;
+    /**
+     * Levels this many cells outside of the view are still loaded, so short scrolls find them ready.
+     */
+    private static final int PRELOAD_MARGIN = 4;
+
+    private final LevelLibrary library;
+    private final ThumbnailCache thumbnails;
+    private final JList<Integer> list;
+
+    private final ThreadPoolExecutor loader;
+    /**
+     * Levels waiting for their thumbnail. Only used on the event dispatch thread.
+     */
+    private final Set<Integer> pending = new HashSet<>();
+    private volatile int firstVisible = 0;
+    private volatile int lastVisible = -1;
+
+    /**
+     * @param library
+     * @param thumbnails
+     * @param selectedLevel index of the level selected at first, -1 for none
+     * @param selectionListener called with the index of the selected level, or -1 when it is deselected
+     */
+    public LevelSelector(LevelLibrary library, ThumbnailCache thumbnails, int selectedLevel, IntConsumer selectionListener) {
+        this.library = library;
+        this.thumbnails = thumbnails;
+
+        list = new JList<>(new AbstractListModel<Integer>() {
+            @Override
+            public int getSize() {
+                return library.size();
+            }
+
+            @Override
+            public Integer getElementAt(int index) {
+                return index;
+            }
+        });
+        list.setLayoutOrientation(JList.VERTICAL_WRAP);
+        list.setVisibleRowCount(1);
+        list.setFixedCellWidth(thumbnails.getSize() + GAP);
+        list.setFixedCellHeight(thumbnails.getSize());
+        list.setSelectionModel(new ToggleSelectionModel());
+        if(selectedLevel >= 0 && selectedLevel < library.size()) list.setSelectedIndex(selectedLevel);
+        list.addListSelectionListener(e -> {
+            if(!e.getValueIsAdjusting()) selectionListener.accept(list.getSelectedIndex());
+        });
+
+        LevelThumbnail renderer = new LevelThumbnail(thumbnails.getSize());
+        list.setCellRenderer((l, level, index, isSelected, cellHasFocus) -> {
+            renderer.setImage(image(level));
+            renderer.selected = isSelected;
+            return renderer;
+        });
+
+        loader = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingDeque<Runnable>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public boolean offer(Runnable task) {
+                return offerFirst(task);
+            }
+        }, r -> {
+            Thread thread = new Thread(r, "thumbnail-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        setViewportView(list);
+        setHorizontalScrollBarPolicy(HORIZONTAL_SCROLLBAR_ALWAYS);
+        setVerticalScrollBarPolicy(VERTICAL_SCROLLBAR_NEVER);
+        getHorizontalScrollBar().setUnitIncrement(thumbnails.getSize() / 3);
+        getViewport().addChangeListener(e -> {
+            firstVisible = list.getFirstVisibleIndex();
+            lastVisible = list.getLastVisibleIndex();
+        });
+    }
+
+    /**
+     * Scrolls to a level and selects it.
+     * @param index index of the level, ignored if there is no such level
+     */
+    public void jumpTo(int index) {
+        if(index < 0 || index >= library.size()) return;
+        list.setSelectedIndex(index);
+        list.ensureIndexIsVisible(index);
+    }
+
+    /**
+     * Stops loading thumbnails. Call when the selector is removed.
+     */
+    public void dispose() {
+        loader.shutdownNow();
+    }
+
+    /**
+     * @return the thumbnail of the level if it is in memory, otherwise null and the thumbnail is requested
+     */
+    private BufferedImage image(int level) {
+        Graph graph;
+        try {
+            graph = library.get(level);
+        } catch (IOException e) {
+            return null;
+        }
+        BufferedImage image = thumbnails.getIfPresent(graph);
+        if(image == null && pending.add(level)) {
+            loader.execute(() -> load(level));
+        }
+        return image;
+    }
+
+    /**
+     * Renders or reads the thumbnail of a level on the loader thread.
+     */
+    private void load(int level) {
+        if(level >= firstVisible - PRELOAD_MARGIN && level <= lastVisible + PRELOAD_MARGIN) {
+            try {
+                // A copy, the cached graph may be in use on the event dispatch thread
+                thumbnails.get(library.load(level));
+            } catch (IOException e) {
+                System.err.println("Error loading level " + level + ": " + e.getMessage());
+            }
+        }
+        SwingUtilities.invokeLater(() -> {
+            pending.remove(level);
+            Rectangle bounds = list.getCellBounds(level, level);
+            if(bounds != null) list.repaint(bounds);
+        });
+    }
+
+    /**
+     * Single selection where clicking the selected level deselects it.
+     */
+    private static class ToggleSelectionModel extends DefaultListSelectionModel {
+        private static final long serialVersionUID = 1L;
+
+        ToggleSelectionModel() {
+            setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        }
+
+        @Override
+        public void setSelectionInterval(int index0, int index1) {
+            if(index0 == index1 && isSelectedIndex(index0) && !getValueIsAdjusting()) clearSelection();
+            else super.setSelectionInterval(index0, index1);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JComponent;
+
+/**
+ * A level in the level selector, drawn from its cached image.
+ * One instance renders all cells of the selector, see LevelSelector.
+ */
+public class LevelThumbnail extends JComponent {
+    private static final Color selectedColor = new Color(0,255,0, 100);
+
+    private final int size;
+    /**
+     * Null while the image is loaded, the background is drawn instead.
+     */
+    private BufferedImage image;
+    /**
+     * Set to true if selected in level selector.
+     */
+    boolean selected = false;
+
+    public LevelThumbnail(int size) {
+        this.size = size;
+        setPreferredSize(new Dimension(size, size));
+    }
+
+    void setImage(BufferedImage image) {
+        this.image = image;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if(image != null) {
+            g.drawImage(image, 0, 0, null);
+        } else {
+            g.setColor(Canvas.bgColor);
+            g.fillRect(0, 0, size, size);
+        }
+        if(selected) {
+            g.setColor(selectedColor);
+            g.fillRect(0, 0, size, size);
+        }
+    }
+}
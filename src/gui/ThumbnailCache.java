@@ -0,0 +1,169 @@
+package gui;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import logic.gameobjects.Graph;
+import logic.store.LevelCodec;
+
+/**
+ * Images of levels for the level selector, rendered once and kept in memory and on disk.
+ *
+ * Images are keyed by a hash of the encoded level (walls, clues and verdict) and the size of the image,
+ * so a changed level gets a new image and stale images are never shown. Images in memory are kept in an LRU cache,
+ * images on disk are PNG files named by their key. A missing or unreadable file is rendered again.
+ *
+ * The directory is a disposable cache: images of edited or deleted levels are never removed from it,
+ * and it can be deleted at any time, e.g. when it grows too large. Temporary files left by a crash
+ * are deleted when the cache is created.
+ */
+public class ThumbnailCache {
+    public static final int DEFAULT_MEMORY_SIZE = 512;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final int size;
+    private final Map<String, BufferedImage> images;
+
+    /**
+     * @param directory where images are stored, null to keep them only in memory
+     * @param size width and height of the images in pixels
+     * @param memorySize maximum number of images kept in memory
+     */
+    public ThumbnailCache(File directory, int size, int memorySize) {
+        this.directory = directory;
+        this.size = size;
+        deleteTemporaryFiles();
+        images = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+                return size() > memorySize;
+            }
+        };
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Reading and rendering don't hold the lock, so getIfPresent doesn't wait for them.
+     * @return the image of the level, from memory, from disk or rendered now
+     */
+    public BufferedImage get(Graph graph) {
+        String key = key(graph);
+        BufferedImage image = getIfPresent(key);
+        if(image != null) return image;
+        image = readFile(key);
+        if(image == null) {
+            image = render(graph, size);
+            writeFile(key, image);
+        }
+        synchronized(this) {
+            images.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * @return the image of the level if it is in memory, null otherwise
+     */
+    public BufferedImage getIfPresent(Graph graph) {
+        return getIfPresent(key(graph));
+    }
+
+    private synchronized BufferedImage getIfPresent(String key) {
+        return images.get(key);
+    }
+
+    /**
+     * Drops the image of the level from memory and disk, e.g. when it is deleted from the library.
+     * Changed levels don't need this, they get a new key.
+     */
+    public synchronized void invalidate(Graph graph) {
+        String key = key(graph);
+        images.remove(key);
+        if(directory != null) new File(directory, key + ".png").delete();
+    }
+
+    /**
+     * Draws the level as the editor shows it, without painted cells, into a new image.
+     */
+    public static BufferedImage render(Graph graph, int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        try {
+            Canvas canvas = new Canvas(graph);
+            canvas.setSize(new Dimension(size, size));
+            canvas.paintBoard(g2);
+        } finally {
+            g2.dispose();
+        }
+        return image;
+    }
+
+    private String key(Graph graph) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(LevelCodec.encode(graph));
+            StringBuilder sb = new StringBuilder(2 * hash.length + 8);
+            for(byte b : hash) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return sb.append('-').append(size).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private BufferedImage readFile(String key) {
+        if(directory == null) return null;
+        File file = new File(directory, key + ".png");
+        if(!file.isFile()) return null;
+        try {
+            BufferedImage image = ImageIO.read(file);
+            return image != null && image.getWidth() == size && image.getHeight() == size ? image : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes to a temporary file first, so a crash or another thread writing the same image
+     * never leaves a half written image under the key. The temporary file is deleted if writing fails.
+     */
+    private void writeFile(String key, BufferedImage image) {
+        if(directory == null) return;
+        File temporary = null;
+        try {
+            Files.createDirectories(directory.toPath());
+            temporary = File.createTempFile(key, TEMPORARY_SUFFIX, directory);
+            ImageIO.write(image, "png", temporary);
+            Files.move(temporary.toPath(), new File(directory, key + ".png").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error writing thumbnail: " + e.getMessage());
+        } finally {
+            if(temporary != null) temporary.delete();
+        }
+    }
+
+    /**
+     * Deletes temporary files of writes which were interrupted by a crash.
+     */
+    private void deleteTemporaryFiles() {
+        if(directory == null) return;
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(TEMPORARY_SUFFIX));
+        if(files == null) return;
+        for(File file : files) file.delete();
+    }
+}
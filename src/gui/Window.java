@@ -1,25 +1,33 @@
 package gui;
 
 import java.awt.BorderLayout;
-import java.awt.Dimension;
 import java.awt.GridLayout;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
-import javax.swing.Box;
-import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
-import javax.swing.JScrollPane;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 
 import logic.Core;
 import logic.Editor;
 import logic.Game;
+import logic.Validator;
 import logic.gameobjects.Graph;
+import logic.gameobjects.Verdict;
+import logic.store.LevelLibrary;
 
 /** 
  * User interface.
@@ -53,56 +61,112 @@ public class Window extends JFrame {
         JPanel menuContainer = new JPanel();
         JButton levelEditorButton = new JButton("Level Editor");
         JButton playButton = new JButton("Play!");
+        JTextField widthField = new JTextField(Integer.toString(boardWidth), 4);
+        JTextField heightField = new JTextField(Integer.toString(boardHeight), 4);
 
-        levelEditorButton.addActionListener(e -> levelEditor());
-        playButton.addActionListener(e -> game());
+        levelEditorButton.addActionListener(e -> {
+            readBoardSize(widthField, heightField);
+            levelEditor();
+        });
+        playButton.addActionListener(e -> {
+            readBoardSize(widthField, heightField);
+            game();
+        });
         
         menuContainer.add(levelEditorButton);
         menuContainer.add(playButton);
+        menuContainer.add(new JLabel("Size of new boards:"));
+        menuContainer.add(widthField);
+        menuContainer.add(new JLabel("x"));
+        menuContainer.add(heightField);
 
-        JPanel levelContainer = new JPanel();
-        levelContainer.setLayout(new BoxLayout(levelContainer, BoxLayout.X_AXIS));
-        List<Graph> graphs = Core.loadGraphs();
-        ArrayList<Canvas> canvasList = new ArrayList<>();
+        openLibrary();
+        if(library != null) {
+            levelSelector = new LevelSelector(library, thumbnails, selectedLevel, level -> selectedLevel = level);
+            JTextField levelField = new JTextField(6);
+            JButton goToButton = new JButton("Go to level");
+            goToButton.addActionListener(e -> goToLevel(levelField));
+            levelField.addActionListener(e -> goToLevel(levelField));
+            menuContainer.add(new JLabel(library.size() + " levels"));
+            menuContainer.add(levelField);
+            menuContainer.add(goToButton);
+            add(levelSelector, BorderLayout.CENTER);
+        }
+        add(menuContainer, BorderLayout.NORTH);
+    }
+    /**
+     * Levels shown in the menu. Reopened every time the menu is shown, so saved levels appear.
+     */
+    private LevelLibrary library;
+    /**
+     * Images of the levels in the menu, kept while the window is open and in the thumbnails directory.
+     */
+    private final ThumbnailCache thumbnails = new ThumbnailCache(new File("thumbnails"), 150, ThumbnailCache.DEFAULT_MEMORY_SIZE);
+    /**
+     * Index of the selected level in the library, -1 if none is selected.
+     */
+    private int selectedLevel = -1;
+    /**
+     * Shows the levels of the library, null if there is no library.
+     */
+    private LevelSelector levelSelector;
 
-        graphs.forEach(graph -> {
-            Canvas canv = new Canvas(graph); 
-            canvasList.add(canv);
-            levelContainer.add(canv);
-            levelContainer.add(Box.createHorizontalStrut(20));
-    
-            canv.setPreferredSize(new Dimension(150,150));
-            canv.repaint();
-            canv.addMouseListener(new MouseAdapter() {
-                @Override
-                public void mouseClicked(MouseEvent e) {
-                    setSelectedGraph(canv.graph);
-                    selectCanvas(canvasList, canv); 
+    private void openLibrary() {
+        if(levelSelector != null) {
+            levelSelector.dispose();
+            levelSelector = null;
+        }
+        try {
+            if(library != null) library.close();
+            library = Core.openLibrary(LevelLibrary.DEFAULT_CACHE_SIZE);
+        } catch (IOException e) {
+            library = null;
+            System.err.println("Error loading file: " + e.getMessage());
+        }
+    }
 
-                }
-        });
-        });
+    /**
+     * @return a copy of the selected level which can be played or edited, null if no level is selected
+     */
+    private Graph loadSelectedGraph() {
+        if(selectedLevel == -1 || library == null) return null;
+        try {
+            return library.load(selectedLevel);
+        } catch (IOException e) {
+            System.err.println("Error loading level " + selectedLevel + ": " + e.getMessage());
+            return null;
+        }
+    }
 
-        JScrollPane levelScroller = new JScrollPane(levelContainer);  
+    /**
+     * Size of the board when no level is selected.
+     */
+    private int boardWidth = Graph.DEFAULT_SIZE;
+    private int boardHeight = Graph.DEFAULT_SIZE;
 
-        
-        levelScroller.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_ALWAYS);
-        levelScroller.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_NEVER);
-        add(menuContainer, BorderLayout.NORTH);
-        add(levelScroller, BorderLayout.CENTER);   
+    private void readBoardSize(JTextField widthField, JTextField heightField) {
+        try {
+            int width = Integer.parseInt(widthField.getText().trim());
+            int height = Integer.parseInt(heightField.getText().trim());
+            if(width < 1 || height < 1) throw new NumberFormatException();
+            boardWidth = width;
+            boardHeight = height;
+        } catch (NumberFormatException ex) {
+            System.out.println("Wrong number format");
+        }
     }
-    private Graph selectedGraph = null;
     
-    private void setSelectedGraph(Graph g) {
-        if(selectedGraph == g) selectedGraph = null;
-        else selectedGraph = g;
-    }
-
-    private void selectCanvas(ArrayList<Canvas> canvasList, Canvas canvas) {
-        boolean prevState = canvas.selected; 
-        canvasList.forEach(canv->canv.selected = false);
-        canvas.selected = !prevState;
-        canvasList.forEach(canv->canv.repaint());
+    /**
+     * Scrolls to and selects the level with the number in the field, counting from 1.
+     */
+    private void goToLevel(JTextField levelField) {
+        try {
+            int level = Integer.parseInt(levelField.getText().trim()) - 1;
+            if(level < 0 || level >= library.size()) throw new NumberFormatException();
+            levelSelector.jumpTo(level);
+        } catch (NumberFormatException ex) {
+            System.out.println("Wrong level number");
+        }
     }
 
 
@@ -115,26 +179,63 @@ public class Window extends JFrame {
 
     private void initGame() {
         setLayout(new BorderLayout());
-        Game game = selectedGraph == null ? new Game() : new Game(selectedGraph);
-        Canvas canvas = new GameCanvas(game);
+        Graph selectedGraph = loadSelectedGraph();
+        Game game = selectedGraph == null ? new Game(boardWidth, boardHeight) : new Game(selectedGraph);
+        GameCanvas canvas = new GameCanvas(game);
+        new Validator(game, SwingUtilities::invokeLater, canvas::repaintChanged);
         JButton returnButton = new JButton("Return");
+        JButton undoButton = new JButton("Undo");
+        JButton redoButton = new JButton("Redo");
+        JButton hintButton = new JButton("Hint");
+        JLabel hintLabel = new JLabel();
         returnButton.addMouseListener(new MouseAdapter() {
             public void mouseClicked(MouseEvent e) {
                 if(game.hasEnded()) menu();
             };
         });
-        add(returnButton, BorderLayout.EAST);
+        undoButton.addActionListener(e -> {
+            canvas.cancelHint();
+            hintLabel.setText("");
+            if(game.undo()) canvas.repaintChanged();
+        });
+        redoButton.addActionListener(e -> {
+            canvas.cancelHint();
+            hintLabel.setText("");
+            if(game.redo()) canvas.repaintChanged();
+        });
+        canvas.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                hintLabel.setText("");
+            }
+        });
+        hintButton.addActionListener(e -> {
+            hintLabel.setText("Searching...");
+            canvas.requestHint(hint -> hintLabel.setText(hint == null ? "No hint found" : "<html>" + hint + "</html>"));
+        });
+
+        JPanel buttonContainer = new JPanel(new GridLayout(0,1));
+        buttonContainer.add(undoButton);
+        buttonContainer.add(redoButton);
+        buttonContainer.add(hintButton);
+        buttonContainer.add(hintLabel);
+        buttonContainer.add(returnButton);
+        add(buttonContainer, BorderLayout.EAST);
         add(canvas, BorderLayout.WEST);
     }
     
     private void initLevelEditor() {
-        Editor editor = selectedGraph == null ? new Editor() : new Editor(selectedGraph);
+        Graph selectedGraph = loadSelectedGraph();
+        Editor editor = selectedGraph == null ? new Editor(boardWidth, boardHeight) : new Editor(selectedGraph);
         
         Canvas canvas = new EditorCanvas(editor);
         JButton wallModeButton = new JButton("Paint Walls");
         JButton blackCellModeButton = new JButton("Set Black Cell Vount in Room");
         JTextField blackCountField = new JTextField();
 
+        JButton uniquenessButton = new JButton("Check Uniqueness");
+        JLabel verdictLabel = new JLabel(verdictText(editor.getGraph().getVerdict()));
+
         JButton saveButton = new JButton("Save");
         JButton cancelButton = new JButton("Cancel");
 
@@ -143,6 +244,8 @@ public class Window extends JFrame {
         buttonContainer.add(wallModeButton);
         buttonContainer.add(blackCellModeButton);
         buttonContainer.add(blackCountField);
+        buttonContainer.add(uniquenessButton);
+        buttonContainer.add(verdictLabel);
         buttonContainer.add(saveButton);
         buttonContainer.add(cancelButton);
 
@@ -161,11 +264,24 @@ public class Window extends JFrame {
             editor.mode = Editor.Mode.BLACKCELL;
         });
 
+        uniquenessButton.addActionListener(e-> {
+            checkUniqueness(editor, verdictLabel, null);
+        });
+
         saveButton.addActionListener(e-> {
-            editor.saveGraph();
-            menu();
+            saveButton.setEnabled(false);
+            uniquenessButton.setEnabled(false);
+            checkUniqueness(editor, verdictLabel, verdict -> {
+                editor.saveGraph();
+                if(verdict != Verdict.UNIQUE) {
+                    JOptionPane.showMessageDialog(this, "The level was saved. " + verdictLabel.getText() + ".",
+                            "Level saved", JOptionPane.WARNING_MESSAGE);
+                }
+                menu();
+            });
         });
         cancelButton.addActionListener(e-> {
+            cancelUniquenessCheck();
             menu();
         });
 
@@ -174,6 +290,67 @@ public class Window extends JFrame {
         add(buttonContainer, BorderLayout.EAST);
     }
 
+    /**
+     * Time a uniqueness check of the editor may take before the level is left unchecked.
+     */
+    static final long UNIQUENESS_TIME_BUDGET_MS = 10000;
+    /**
+     * Uniqueness checks run on this thread, one at a time, so the editor stays responsive on large boards.
+     */
+    private static final ExecutorService uniquenessExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "uniqueness-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> uniquenessCheck;
+    /**
+     * Counts uniqueness checks and cancellations, so results of cancelled checks are dropped.
+     */
+    private int uniquenessRequest = 0;
+
+    /**
+     * Counts the solutions of the edited board in the background and shows the verdict.
+     * The verdict is stored in the graph unless the board was edited meanwhile. Cancels the previous check.
+     * @param then called on the event dispatch thread with the verdict of the graph, null if nothing more is to be done
+     */
+    private void checkUniqueness(Editor editor, JLabel verdictLabel, Consumer<Verdict> then) {
+        cancelUniquenessCheck();
+        int request = uniquenessRequest;
+        int editCount = editor.getEditCount();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(UNIQUENESS_TIME_BUDGET_MS);
+        Callable<Verdict> check = editor.uniquenessCheck(deadline);
+        verdictLabel.setText("Checking...");
+        uniquenessCheck = uniquenessExecutor.submit(() -> {
+            Verdict verdict = check.call();
+            if(Thread.currentThread().isInterrupted()) return null;
+            SwingUtilities.invokeLater(() -> {
+                if(request != uniquenessRequest) return;
+                uniquenessCheck = null;
+                boolean stored = editor.setVerdict(verdict, editCount);
+                verdictLabel.setText(stored && verdict == Verdict.UNKNOWN ? "Too slow to check" : verdictText(editor.getGraph().getVerdict()));
+                if(then != null) then.accept(editor.getGraph().getVerdict());
+            });
+            return null;
+        });
+    }
+
+    private void cancelUniquenessCheck() {
+        uniquenessRequest++;
+        if(uniquenessCheck != null) {
+            uniquenessCheck.cancel(true);
+            uniquenessCheck = null;
+        }
+    }
+
+    private static String verdictText(Verdict verdict) {
+        switch(verdict) {
+            case UNIQUE: return "Unique solution";
+            case MULTIPLE: return "Multiple solutions";
+            case UNSOLVABLE: return "No solution";
+            default: return "Solutions not checked";
+        }
+    }
+
     private void levelEditor() {
         getContentPane().removeAll();
         initLevelEditor();
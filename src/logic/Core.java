@@ -1,15 +1,17 @@
 package logic;
 
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import logic.gameobjects.Graph;
+import logic.store.LevelLibrary;
+import logic.store.LevelStore;
 
 /**
  * Shared logic of the Game and Editor
@@ -24,6 +26,14 @@ public abstract class Core {
         graph = new Graph();
     }
 
+    protected Core(int width, int height) {
+        graph = new Graph(width, height);
+    }
+
+    protected Core(Graph g) {
+        graph = g;
+    }
+
     /**
      * Called when a cell is clicked on the cnavas
      * @param row
@@ -37,45 +47,92 @@ public abstract class Core {
      */
     public void edgeClicked(int neighbour1Index, int neighbour2Index) {}
 
-    static final String FILENAME = "levels.ser";
+    static final String FILENAME = "levels.dat";
+    /**
+     * Level file of older versions, migrated to the store when there is none yet.
+     */
+    static final String SERIALIZED_FILENAME = "levels.ser";
+
     public void saveGraph() {
-        List<Graph> graphs = Core.loadGraphs();
-        if(graphs == null) graphs = new ArrayList<>();
-        graphs.add(this.graph);
-        ObjectOutputStream oos = null;
+        saveGraphs(Collections.singletonList(this.graph));
+    }
+
+    /**
+     * Stores which levels were saved to, kept open until the program exits so a save doesn't read the index again.
+     */
+    private static final Map<File, LevelStore> saveStores = new HashMap<>();
+
+    /**
+     * Appends graphs to the level store. Takes the same time however many levels the store has.
+     * @param newGraphs
+     */
+    public static void saveGraphs(List<Graph> newGraphs) {
+        saveGraphs(new File(FILENAME), newGraphs);
+    }
+
+    /**
+     * Appends graphs to the level store in the given file, e.g. another library than the one of the game.
+     * Takes the same time however many levels the store has, after the first save to the file.
+     * @param file
+     * @param newGraphs
+     */
+    public static void saveGraphs(File file, List<Graph> newGraphs) {
         try {
-            oos = new ObjectOutputStream(new FileOutputStream(FILENAME));
-            // Write the object to the file
-            oos.writeObject(graphs);
+            storeForSaving(file).appendAll(newGraphs);
         } catch (IOException e) {
-            System.err.println("Error writing the object to the file: " + e.getMessage());
-        } finally {
-            try {
-                oos.close();
-            } catch(Exception e) {
+            System.err.println("Error writing the level file: " + e.getMessage());
+        }
+    }
 
-            }
+    private static synchronized LevelStore storeForSaving(File file) throws IOException {
+        File key = file.getAbsoluteFile();
+        LevelStore store = saveStores.get(key);
+        if(store == null) {
+            store = key.equals(new File(FILENAME).getAbsoluteFile()) ? openStore() : new LevelStore(file);
+            saveStores.put(key, store);
         }
+        return store;
     }
-    
-    public static List<Graph> loadGraphs() {
-        ArrayList<Graph> graphs = new ArrayList<>();
-        ObjectInputStream ois = null;
-        try {
-            ois = new ObjectInputStream(new FileInputStream(FILENAME));
-            graphs = (ArrayList<Graph>)ois.readObject();
 
+    public static List<Graph> loadGraphs() {
+        try(LevelStore store = openStore()) {
+            return store.readAll();
         } catch (IOException e) {
             System.err.println("Error loading file: " + e.getMessage());
-        } catch (ClassNotFoundException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Reads all levels of the level store in the given file.
+     * @param file
+     */
+    public static List<Graph> loadGraphs(File file) {
+        try(LevelStore store = new LevelStore(file)) {
+            return store.readAll();
+        } catch (IOException e) {
             System.err.println("Error loading file: " + e.getMessage());
-        } finally {
-            try {
-                ois.close();
-            } catch (Exception e) {
-            }
+            return new ArrayList<>();
         }
-        
-        return graphs;
+    }
+
+    /**
+     * Opens the levels for random access. The store is opened first if it needs a migration or an index.
+     * @param cacheSize maximum number of decoded levels kept
+     */
+    public static LevelLibrary openLibrary(int cacheSize) throws IOException {
+        File file = new File(FILENAME);
+        if(!file.exists() || !LevelStore.indexFile(file).exists()) openStore().close();
+        return new LevelLibrary(file, cacheSize);
+    }
+
+    /**
+     * Opens the level store, migrating the serialized level file first if there is one and no store yet.
+     */
+    public static LevelStore openStore() throws IOException {
+        File file = new File(FILENAME);
+        File serialized = new File(SERIALIZED_FILENAME);
+        if(!file.exists() && serialized.exists()) LevelStore.migrate(serialized, file);
+        return new LevelStore(file);
     }
 }
@@ -1,8 +1,11 @@
 package logic;
 
 
-import logic.gameobjects.Cell;
+import java.util.concurrent.Callable;
+
 import logic.gameobjects.Graph;
+import logic.gameobjects.Verdict;
+import logic.solver.Solver;
 
 /**
  * Class for editing boards. Doesn't check validity of boards.
@@ -11,30 +14,60 @@ public class Editor extends Core {
     public enum Mode {BLACKCELL, WALL}
     public Mode mode;
     public int blackCellCount = -1;
+    /**
+     * Counts edits of walls and clues, so results of checks started before an edit can be dropped.
+     */
+    private int editCount = 0;
     public Editor() {
         super();
         this.mode = Mode.WALL;
     }
+    public Editor(int width, int height) {
+        super(width, height);
+        this.mode = Mode.WALL;
+    }
     public Editor(Graph g) {
-        super();
-        graph = g;
+        super(g);
         this.mode = Mode.WALL;
     }
 
     @Override
     public void cellClicked(int row, int column) {
-        Cell clickedCell = graph.cells.get(row).get(column);
-        clickedCell.blackCount = blackCellCount;
-
+        graph.setBlackCount(graph.getCellIndex(row, column), blackCellCount);
+        editCount++;
     }
 
     @Override
     public void edgeClicked(int neighbour1Index, int neighbour2Index) {
         graph.acceptEdge(neighbour1Index, neighbour2Index, e -> e.isWall = !e.isWall);
+        editCount++;
     }
 
-    @Override
-    public void saveGraph() {
-        super.saveGraph();
+    public int getEditCount() {
+        return editCount;
+    }
+
+    /**
+     * Prepares counting the solutions of the board as it is now, stopping at 2. Later edits don't change the check.
+     * Large boards may take long, so the check can run on another thread, and gives up at the deadline or when interrupted.
+     * @param deadline value of System.nanoTime() at which the check gives up
+     * @return the check, returning the verdict or UNKNOWN if it gave up
+     */
+    public Callable<Verdict> uniquenessCheck(long deadline) {
+        Solver solver = new Solver(graph);
+        return () -> solver.checkUniqueness(deadline);
+    }
+
+    /**
+     * Stores the verdict of a check in the graph, unless the board was edited after the check was prepared.
+     * Boards are saved with their verdict, so boards without a unique solution can be told apart.
+     * @param verdict
+     * @param editCount edit count when the check was prepared
+     * @return true if the verdict was stored
+     */
+    public boolean setVerdict(Verdict verdict, int editCount) {
+        if(editCount != this.editCount) return false;
+        graph.setVerdict(verdict);
+        return true;
     }
 }
\ No newline at end of file
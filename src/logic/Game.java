@@ -1,28 +1,106 @@
 package logic;
 
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.function.Predicate;
-
 import logic.gameobjects.Cell;
-import logic.gameobjects.Edge;
 import logic.gameobjects.Graph;
+import logic.gameobjects.IntList;
+import logic.gameobjects.RoomIndex;
+import logic.gameobjects.RunSegments;
+import logic.gameobjects.WhiteConnectivity;
+import logic.metrics.Metrics;
+import logic.metrics.RuleCheckEvent;
+import logic.metrics.Timer;
 
 /**
  * Game logic
+ * Boards can have any width and height. The cost of checking rules grows linearly with the number of cells,
+ * the target is to keep the rule check of a click below 16 ms (one frame) on a 1000x1000 board.
  */
 public class Game extends Core {
+
+    /**
+     * If true, only the rules a click can affect are checked: 
+     * the neighbours, the row, the column and the room of the clicked cell.
+     * Otherwise the whole board is checked. Both set the same errors.
+     */
+    public boolean incremental = true;
+
+    /**
+     * Reasons of cell errors. A cell is erroneous if any of its bits are set.
+     * Each check clears and sets only its own bit, so checks can run on parts of the board.
+     */
+    private static final int ADJACENT_BLACK_ERROR = 1;
+    private static final int WHITE_ROW_ERROR = 2;
+    private static final int WHITE_COLUMN_ERROR = 4;
+    private byte[] cellErrors;
+
+    private int erroneousCellCount = 0;
+    private int numberErrorCount = 0;
+    private int unpaintedCount = 0;
+
+    private WhiteConnectivity whiteConnectivity;
+
+    /**
+     * Times of the rule checks, shared by all games. See Metrics and RuleCheckEvent.
+     */
+    private static final Timer ROOM_COUNT_TIMER = Metrics.timer("rule.roomCount");
+    private static final Timer ADJACENT_BLACK_TIMER = Metrics.timer("rule.adjacentBlack");
+    private static final Timer WHITE_LINES_TIMER = Metrics.timer("rule.whiteLines");
+    private static final Timer CONNECTIVITY_TIMER = Metrics.timer("rule.connectivity");
+    /**
+     * Time of updating the white components after a cell changed, the incremental part of the connectivity check.
+     */
+    private static final Timer CONNECTIVITY_UPDATE_TIMER = Metrics.timer("rule.connectivityUpdate");
+
+    /**
+     * Moves in the order they were made, one int per move, see packMove.
+     * Moves before journalPosition are done, the ones after it were undone and can be redone.
+     */
+    private final IntList journal = new IntList();
+    private int journalPosition = 0;
+
+    /**
+     * Checks the rules on a worker thread if set, see Validator. Errors, connectivity and the end of the game
+     * are then published by it, and nothing is checked in this game.
+     */
+    private Validator validator;
+    private boolean validatedConnected = true;
+    /**
+     * Receives the cells whose errors change while applyMoves runs.
+     */
+    private IntList errorChanges;
     
     public Game() {
         super();
+        initChecks();
+    }
+
+    public Game(int width, int height) {
+        super(width, height);
+        initChecks();
     }
 
     public Game(Graph g) {
-        graph = g;
+        super(g);
         graph.forEachCell(c->{
             if(c.blackCount > 0) c.numberError = true; // Initializes number errors
         });
+        initChecks();
+    }
+
+    /**
+     * Counts unpainted cells and errors and checks the whole board once.
+     */
+    private void initChecks() {
+        cellErrors = new byte[graph.N];
+        graph.forEachCell(c -> {
+            if(c.unpainted()) unpaintedCount++;
+            if(c.numberError) numberErrorCount++;
+            c.cellError = false;
+        });
+        checkAdjacentBlackCells();
+        checkWhiteLines();
+        whiteConnectivity = new WhiteConnectivity(graph);
     }
 
     /**
@@ -30,10 +108,169 @@ public class Game extends Core {
      */
     @Override
     public void cellClicked(int row, int column) {
-        Cell clickedCell = graph.cells.get(row).get(column);
+        Cell clickedCell = graph.getCell(row, column);
+        Cell.State oldState = clickedCell.state;
         clickedCell.nextState(); 
-        setEdges(clickedCell);
-        checkRules(clickedCell);
+        // A new move drops the moves which could be redone
+        journal.truncate(journalPosition);
+        journal.add(packMove(graph.getCellIndex(clickedCell), oldState, clickedCell.state));
+        journalPosition++;
+        cellChanged(clickedCell, oldState);
+    }
+
+    /**
+     * Takes back the last move. Errors are updated the same way as after a click.
+     * Undoing the move which solved the board continues the game.
+     * @return false if there is no move to undo
+     */
+    public boolean undo() {
+        if(!canUndo()) return false;
+        int move = journal.get(--journalPosition);
+        setState(move >>> 4, Cell.State.values()[move >> 2 & 3]);
+        return true;
+    }
+
+    /**
+     * Makes the last undone move again.
+     * @return false if there is no move to redo
+     */
+    public boolean redo() {
+        if(!canRedo()) return false;
+        int move = journal.get(journalPosition++);
+        setState(move >>> 4, Cell.State.values()[move & 3]);
+        return true;
+    }
+
+    public boolean canUndo() {
+        return journalPosition > 0;
+    }
+
+    public boolean canRedo() {
+        return journalPosition < journal.size();
+    }
+
+    /**
+     * Packs a move into an int: the cell index in the high 28 bits, then 2 bits for each state.
+     */
+    private static int packMove(int cellIndex, Cell.State oldState, Cell.State newState) {
+        return cellIndex << 4 | oldState.ordinal() << 2 | newState.ordinal();
+    }
+
+    private void setState(int cellIndex, Cell.State state) {
+        Cell cell = graph.getCell(cellIndex);
+        Cell.State oldState = cell.state;
+        cell.state = state;
+        ended = false;
+        cellChanged(cell, oldState);
+    }
+
+    /**
+     * Updates counters, edges and errors after the state of a cell changed,
+     * or passes the change on to the validator.
+     * @param cell
+     * @param oldState state before the change
+     */
+    private void cellChanged(Cell cell, Cell.State oldState) {
+        if(validator != null) {
+            validator.submit(packMove(graph.getCellIndex(cell), oldState, cell.state));
+            return;
+        }
+        stateChanged(graph.getCellIndex(cell), oldState, cell.state);
+        setEdges(cell);
+        checkRules(cell);
+    }
+
+    void setValidator(Validator validator) {
+        this.validator = validator;
+        validatedConnected = areWhiteCellsInterconnected();
+    }
+
+    /**
+     * Applies moves made on another copy of the board, then checks the rules once for all cells they changed.
+     * Rows, columns and rooms changed by several moves are checked once.
+     * @param moves packed moves in the order they were made, see packMove
+     * @param changedErrors receives the indices of cells whose cell error or number error changed, maybe more than once
+     */
+    void applyMoves(IntList moves, IntList changedErrors) {
+        IntList cells = new IntList(moves.size());
+        boolean[] rows = new boolean[graph.height];
+        boolean[] columns = new boolean[graph.width];
+        for(int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            Cell cell = graph.getCell(move >>> 4);
+            Cell.State oldState = cell.state;
+            cell.state = Cell.State.values()[move & 3];
+            stateChanged(move >>> 4, oldState, cell.state);
+            setEdges(cell);
+            cells.add(move >>> 4);
+            rows[cell.getRow()] = true;
+            columns[cell.getColumn()] = true;
+        }
+
+        errorChanges = changedErrors;
+        long time = Metrics.start();
+        try {
+            RuleCheckEvent event = RuleCheckEvent.start();
+            for(int i = 0; i < cells.size(); i++) {
+                checkBlackCountInRoom(graph.getCell(cells.get(i)));
+            }
+            time = ruleChecked(ROOM_COUNT_TIMER, event, cells.size(), time);
+
+            event = RuleCheckEvent.start();
+            if(incremental) {
+                for(int i = 0; i < cells.size(); i++) checkAdjacentBlackCells(cells.get(i));
+            } else {
+                checkAdjacentBlackCells();
+            }
+            time = ruleChecked(ADJACENT_BLACK_TIMER, event, cells.size(), time);
+
+            event = RuleCheckEvent.start();
+            if(incremental) {
+                for(int row = 0; row < graph.height; row++) {
+                    if(rows[row]) checkWhiteLinesInRow(row);
+                }
+                for(int column = 0; column < graph.width; column++) {
+                    if(columns[column]) checkWhiteLinesInColumn(column);
+                }
+            } else {
+                checkWhiteLines();
+            }
+            time = ruleChecked(WHITE_LINES_TIMER, event, cells.size(), time);
+        } finally {
+            errorChanges = null;
+        }
+        ended = allPainted() && !areErrorsRemaining() && checkConnectivity(cells.size(), time);
+    }
+
+    /**
+     * Shows the result of a validation: sets the errors of cells, and connectivity and the end of the game.
+     * @param cells cells whose errors changed
+     * @param errors for each of the cells, bit 0 for the cell error and bit 1 for the number error
+     */
+    void applyValidation(int[] cells, byte[] errors, boolean connected, boolean ended) {
+        for(int i = 0; i < cells.length; i++) {
+            Cell cell = graph.getCell(cells[i]);
+            cell.cellError = (errors[i] & 1) != 0;
+            cell.numberError = (errors[i] & 2) != 0;
+        }
+        validatedConnected = connected;
+        this.ended = ended;
+    }
+
+    /**
+     * Updates the counters which follow the states of cells.
+     * @param cellIndex
+     * @param oldState
+     * @param newState
+     */
+    private void stateChanged(int cellIndex, Cell.State oldState, Cell.State newState) {
+        graph.getRooms().cellStateChanged(cellIndex, oldState, newState);
+        long time = Metrics.start();
+        RuleCheckEvent event = RuleCheckEvent.start();
+        whiteConnectivity.cellStateChanged(cellIndex, oldState, newState);
+        ruleChecked(CONNECTIVITY_UPDATE_TIMER, event, 1, time);
+        if(oldState == Cell.State.UNPAINTED) unpaintedCount--;
+        if(newState == Cell.State.UNPAINTED) unpaintedCount++;
     }
 
     /**
@@ -56,126 +293,176 @@ public class Game extends Core {
      * @param clickedCell
      */
     protected void checkRules(Cell clickedCell) {
+        long time = Metrics.start();
+        RuleCheckEvent event = RuleCheckEvent.start();
         checkBlackCountInRoom(clickedCell);
-        
-        checkAdjacentBlackCells();
-        
-        checkWhiteLines();
+        time = ruleChecked(ROOM_COUNT_TIMER, event, 1, time);
 
-        if(allPainted() && areWhiteCellsInterconnected() && areErrorsRemaining()) {
-            endGame();
-        }
+        event = RuleCheckEvent.start();
+        if(incremental) checkAdjacentBlackCells(graph.getCellIndex(clickedCell));
+        else checkAdjacentBlackCells();
+        time = ruleChecked(ADJACENT_BLACK_TIMER, event, 1, time);
+
+        event = RuleCheckEvent.start();
+        if(incremental) checkWhiteLines(clickedCell.getRow(), clickedCell.getColumn());
+        else checkWhiteLines();
+        time = ruleChecked(WHITE_LINES_TIMER, event, 1, time);
+
+        ended = allPainted() && !areErrorsRemaining() && checkConnectivity(1, time);
+    }
+
+    /**
+     * Checks if all white cells are interconnected, measured as the last rule check.
+     * @param cells number of changed cells
+     * @param start start time of the measurement, see Metrics.start
+     */
+    private boolean checkConnectivity(int cells, long start) {
+        RuleCheckEvent event = RuleCheckEvent.start();
+        boolean connected = areWhiteCellsInterconnected();
+        ruleChecked(CONNECTIVITY_TIMER, event, cells, start);
+        return connected;
+    }
+
+    /**
+     * Records the time of a rule check and commits its event.
+     * @param start start time of the check, see Metrics.start
+     * @return end time of the check, the start of the next one
+     */
+    private long ruleChecked(Timer timer, RuleCheckEvent event, int cells, long start) {
+        event.finish(timer.getName(), cells, incremental);
+        return timer.stop(start);
     }
 
     /**
      * @return true if there is a cell error or a number error anywhere on the board
      */
     protected boolean areErrorsRemaining() {
-        return graph.findAny(c -> (c.cellError || c.numberError)) != null;
+        return erroneousCellCount > 0 || numberErrorCount > 0;
+    }
+
+    /**
+     * Sets or clears one reason of a cell error, and updates the error flag of the cell.
+     * @param cellIndex
+     * @param bit reason of the error
+     * @param value 
+     */
+    private void setCellError(int cellIndex, int bit, boolean value) {
+        int oldBits = cellErrors[cellIndex];
+        int bits = value ? oldBits | bit : oldBits & ~bit;
+        if(bits == oldBits) return;
+        cellErrors[cellIndex] = (byte) bits;
+        if(oldBits == 0) erroneousCellCount++;
+        if(bits == 0) erroneousCellCount--;
+        graph.getCell(cellIndex).cellError = bits != 0;
+        if(errorChanges != null && (oldBits == 0) != (bits == 0)) errorChanges.add(cellIndex);
+    }
+
+    private void setNumberError(Cell cell, boolean value) {
+        if(cell.numberError == value) return;
+        cell.numberError = value;
+        numberErrorCount += value ? 1 : -1;
+        if(errorChanges != null) errorChanges.add(graph.getCellIndex(cell));
     }
 
     protected boolean ended = false;
+
+    /**
+     * The game ends when the board is solved, and continues if a later move, click or undo, breaks the solution.
+     * Both checking in this game and checking with a validator follow this.
+     * @return true if the board was solved by the last checked move
+     */
     public boolean hasEnded() {
         return ended;
     }
-    private void endGame() {
-        ended = true;
-    }
 
     /**
-     * Helper class for checking if there are white lines going through 3 or more rooms. 
-     * It's a Finite State Machine. 
+     * Checks if there are white lines which go through 3 or more rooms, i.e. cross 2 or more walls.
+     * Runs of white cells are found in one pass over each row and column, 
+     * the walls they cross are counted with the run segments of the graph.
+     * Sets cells erroneous if there are.
      */
-    private static class WhiteLineFSM {
-        boolean wasWhiteWall = false;
-        Set<Cell> lastCells = new HashSet<>();
-        int lastCell1Index; 
-        int lastCell2Index; 
-        boolean error = false;
-        Graph graph = null;
-        
-        WhiteLineFSM(Graph g) {
-            graph = g;
+    protected void checkWhiteLines() {
+        for(int i = 0; i < graph.width; i++) {
+            checkWhiteLinesInColumn(i);
         }
+        for(int i = 0; i < graph.height; i++) {
+            checkWhiteLinesInRow(i);
+        }
+    }
 
-        /**
-         * Checks if there is a white line going through 3 or more rooms.
-         * Sets connected cells erroneous if there are
-         * Expects edges of a row or a column to be fed in order.
-         * @param e edge 
-         * @param c1 one and of the edge
-         * @param c2 another end of the edge
-         */
-        public void nextState(Edge e, Cell c1, Cell c2) {
-            if(lastCell1Index == graph.getCellIndex(c1) && lastCell2Index == graph.getCellIndex(c2)) return;
-
-            if(lastCell1Index != graph.getCellIndex(c1) && lastCell1Index != graph.getCellIndex(c2)
-            && lastCell2Index != graph.getCellIndex(c1) && lastCell2Index != graph.getCellIndex(c2)){
-                error = false;
-                wasWhiteWall = false;
-                lastCells.clear();
-            } 
-            lastCell1Index = graph.getCellIndex(c1);
-            lastCell2Index = graph.getCellIndex(c2);
-
-            
-            if(!wasWhiteWall) {
-                if(e.areWhitekNeighbours && e.isWall) {
-                    wasWhiteWall = true;
-                    lastCells.add(c1);
-                    lastCells.add(c2);
-                } else if (e.areWhitekNeighbours && !e.isWall) {
-                    lastCells.add(c1);
-                    lastCells.add(c2);
-                } 
-            } else if (wasWhiteWall){
-                if(e.areWhitekNeighbours && e.isWall) {
-                    lastCells.add(c1);
-                    lastCells.add(c2);
-                    error = true;
-                } else if(e.areWhitekNeighbours) {
-                    lastCells.add(c1);
-                    lastCells.add(c2);
-                } else if (!e.areWhitekNeighbours) {
-                    error = false;
-                    wasWhiteWall = false;
-                    lastCells.clear();
-                }
+    /**
+     * Checks white lines going through a cell. Only these can change when the cell is clicked.
+     * @param row row of the cell
+     * @param column column of the cell
+     */
+    protected void checkWhiteLines(int row, int column) {
+        checkWhiteLinesInColumn(column);
+        checkWhiteLinesInRow(row);
+    }
+
+    private void checkWhiteLinesInRow(int row) {
+        RunSegments segments = graph.getRunSegments();
+        int first = graph.getCellIndex(row, 0);
+        int runStart = -1;
+        for(int j = 0; j <= graph.width; j++) {
+            boolean white = j < graph.width && graph.getCell(first + j).white();
+            if(white) {
+                if(runStart == -1) runStart = first + j;
+                continue;
             }
+            if(runStart != -1) {
+                // The run of white cells ended, it crosses as many walls as the segments it spans
+                int runEnd = first + j - 1;
+                boolean error = segments.rowSegment(runEnd) - segments.rowSegment(runStart) >= 2;
+                for(int i = runStart; i <= runEnd; i++) setCellError(i, WHITE_ROW_ERROR, error);
+                runStart = -1;
+            }
+            if(j < graph.width) setCellError(first + j, WHITE_ROW_ERROR, false);
         }
+    }
 
-        /**
-         * If machine is in error state stes the error for the stored line of cells.
-         */
-        public void setErrors() {
-            lastCells.forEach(c -> {
-                if(error) c.cellError =  true;
-            });
+    private void checkWhiteLinesInColumn(int column) {
+        RunSegments segments = graph.getRunSegments();
+        int runStart = -1;
+        for(int i = 0; i <= graph.height; i++) {
+            int cellIndex = graph.getCellIndex(i, column);
+            boolean white = i < graph.height && graph.getCell(cellIndex).white();
+            if(white) {
+                if(runStart == -1) runStart = cellIndex;
+                continue;
+            }
+            if(runStart != -1) {
+                int runEnd = cellIndex - graph.width;
+                boolean error = segments.columnSegment(runEnd) - segments.columnSegment(runStart) >= 2;
+                for(int k = runStart; k <= runEnd; k += graph.width) setCellError(k, WHITE_COLUMN_ERROR, error);
+                runStart = -1;
+            }
+            if(i < graph.height) setCellError(cellIndex, WHITE_COLUMN_ERROR, false);
         }
     }
 
-    private WhiteLineFSM whiteLineFSM = new WhiteLineFSM(this.graph);
-
     /**
-     * Checks if there are white lines which go through 3 or more rooms.
-     * Sets cells erroneous if there are.
+     * @return true if all cells are painted
      */
-    protected void checkWhiteLines() {
-        graph.forEachHorizontalEdge((e, p) -> {
-            whiteLineFSM.nextState(e, graph.getCell(p.end1), graph.getCell(p.end2));
-            whiteLineFSM.setErrors();
-        });
-        graph.forEachVerticalEdge((e, p) -> {
-            whiteLineFSM.nextState(e, graph.getCell(p.end1), graph.getCell(p.end2));
-            whiteLineFSM.setErrors();
-        });
+    protected boolean allPainted() {
+        return unpaintedCount == 0;
     }
 
     /**
-     * @return true if all cells are painted
+     * Reused list of cells explored by the connectivity check.
      */
-    protected boolean allPainted() {
-        return graph.findAny(Cell::unpainted) == null;
+    private final IntList filledCells = new IntList();
+
+    /**
+     * Checks if all white cells on the board are interconnected.
+     * In incremental mode components of white cells are tracked while cells change, so this takes constant time.
+     * With a validator this is the result of the last validation.
+     * @return true if all white cells are interconnected
+     */
+    public boolean areWhiteCellsInterconnected() {
+        if(validator != null) return validatedConnected;
+        if(incremental) return whiteConnectivity.isConnected();
+        return floodWhiteCells();
     }
 
     /**
@@ -185,20 +472,16 @@ public class Game extends Core {
      * If not all white cells had been reached by floodfill, then white cells are not interconnected.
      * @return true if all white cells are interconnected
      */
-    private boolean areWhiteCellsInterconnected() {
+    private boolean floodWhiteCells() {
         Cell firstWhite = graph.findAny(Cell::white);
         if(firstWhite == null) return true;
         int firstWhiteIndex = graph.getCellIndex(firstWhite);
-        boolean[] filled = graph.conditionalFloodFill(firstWhiteIndex, Predicate.not(Edge::areWhiteNeighbours), e -> {});
-        int fillCount = 0;
-        for(boolean b : filled) {
-            if(b) fillCount++;
-        }
+        int fillCount = graph.conditionalFloodFill(firstWhiteIndex, Graph.WHITE_NEIGHBOURS, Graph.WHITE_NEIGHBOURS, filledCells).size();
 
         int whiteCount = 0;
-        for(int i = 0; i < graph.S; i++) {
-            for(int j = 0; j < graph.S; j++) {
-                if(graph.cells.get(i).get(j).white()) whiteCount++;
+        for(int i = 0; i < graph.height; i++) {
+            for(int j = 0; j < graph.width; j++) {
+                if(graph.getCell(i, j).white()) whiteCount++;
             }
         }
 
@@ -210,56 +493,35 @@ public class Game extends Core {
      * Sets them erroneous if there are.
      */
     protected void checkAdjacentBlackCells() {
-        graph.forEachCell(cell->cell.cellError = false);
-
-        graph.forEachEdge((edge, endpoints) -> {
-            if(edge.areBlackNeighbours) {
-                graph.getCell(endpoints.end1).cellError = true;
-                graph.getCell(endpoints.end2).cellError = true;
-            }
-        });
-
+        for(int i = 0; i < graph.N; i++) {
+            checkAdjacentBlackCell(i);
+        }
     }
 
     /**
-     * Helper class for checking number of black cells in a room. 
+     * Checks adjacent black cells around a cell. Only these can change when the cell is clicked.
+     * @param cellIndex index of the cell
      */
-    private static class BlackCountCheck {
-        int expectedBlackCount = 0; // Number of expected black cells in the currently investigated room
-        int currentBlackCount = 0; 
-
-        Cell counterCell; // Cell which stores the expected number of black cells
-        void increaseBlackCount() { currentBlackCount++; }
-        void setExpectedBlackCount(Cell c) { expectedBlackCount = c.blackCount; counterCell = c;}
-
-        boolean check() {
-            if(expectedBlackCount == -1) 
-                return true;
+    protected void checkAdjacentBlackCells(int cellIndex) {
+        checkAdjacentBlackCell(cellIndex);
+        graph.iterateNeighbours(cellIndex, (e, i) -> checkAdjacentBlackCell(i));
+    }
 
-            return expectedBlackCount == currentBlackCount;
-        }
-        /**
-         * Sets number error of the counter cell. 
-         */  
-        public void setNumberError(boolean b) {
-            if(counterCell != null) counterCell.numberError = b;
-        }
-    } 
+    private void checkAdjacentBlackCell(int cellIndex) {
+        setCellError(cellIndex, ADJACENT_BLACK_ERROR, graph.anyEdge(cellIndex, Graph.BLACK_NEIGHBOURS));
+    }
 
     /**
      * Checks if the number of black cells in a room. 
      * If there is too many or too few sets number error in the cell containing the expected number of black cells.
+     * Black counts are kept up to date by the room index, so this takes constant time.
      * @param clickedCell
      */
     protected void checkBlackCountInRoom(Cell clickedCell) {
-        int cellIndex = graph.getCellIndex(clickedCell);
-        BlackCountCheck roomCheck = new BlackCountCheck();
-        graph.floodFill(cellIndex, cell -> {
-            if(cell.state == Cell.State.BLACK) roomCheck.increaseBlackCount();
-            if(cell.blackCount != -1) roomCheck.setExpectedBlackCount(cell); 
-        });
-        roomCheck.setNumberError(!roomCheck.check());
-
+        RoomIndex rooms = graph.getRooms();
+        int room = rooms.roomOf(graph.getCellIndex(clickedCell));
+        int clueCell = rooms.clueCell(room);
+        if(clueCell != -1) setNumberError(graph.getCell(clueCell), !rooms.isSatisfied(room));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package logic;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import logic.gameobjects.Graph;
+import logic.gameobjects.IntList;
+import logic.store.LevelCodec;
+
+/**
+ * Checks the rules of a game on a worker thread, so a click only changes the state of a cell and returns.
+ *
+ * The worker keeps its own copy of the board in a second Game. Moves of the game are queued and the worker
+ * applies all moves queued since its last pass at once, so a burst of clicks is checked in one pass.
+ * After each pass the cells whose errors changed, the connectivity of white cells and the end of the game
+ * are handed to the publisher, e.g. SwingUtilities::invokeLater, which applies them to the game in one task,
+ * so the game never shows part of a pass. Errors shown may lag behind the last clicks until the next pass.
+ * The end of the game is only published by a pass which saw every move.
+ *
+ * All validators share one worker thread.
+ */
+public class Validator {
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "rule-validation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Game game;
+    private final Game checker;
+    private final Executor publisher;
+    private final Runnable onPublished;
+
+    private final Object lock = new Object();
+    /**
+     * Moves not yet taken by the worker. Guarded by lock.
+     */
+    private IntList pending = new IntList();
+    /**
+     * True while a pass is queued or running. Guarded by lock.
+     */
+    private boolean running = false;
+
+    // Only used by the worker
+    private IntList applying = new IntList();
+    private final IntList changedErrors = new IntList();
+    private long checkedMoves = 0;
+
+    // Only used by the thread of the game
+    private long submittedMoves = 0;
+
+    /**
+     * Takes over the rule checks of a game. Must be created before the first move.
+     * @param game
+     * @param publisher runs the tasks applying results to the game, on the thread the game is used by
+     * @param onPublished called by the publisher after a result was applied, e.g. to repaint
+     */
+    public Validator(Game game, Executor publisher, Runnable onPublished) {
+        this.game = game;
+        this.publisher = publisher;
+        this.onPublished = onPublished;
+        this.checker = new Game(copy(game.getGraph()));
+        checker.incremental = game.incremental;
+        game.setValidator(this);
+    }
+
+    private static Graph copy(Graph graph) {
+        try {
+            Graph copy = LevelCodec.decode(LevelCodec.encode(graph));
+            for(int i = 0; i < graph.N; i++) copy.getCell(i).state = graph.getCell(i).state;
+            return copy;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Queues a move of the game, starting a pass if none is queued.
+     * @param move packed move, see Game.packMove
+     */
+    void submit(int move) {
+        submittedMoves++;
+        synchronized(lock) {
+            pending.add(move);
+            if(running) return;
+            running = true;
+        }
+        worker.execute(this::drain);
+    }
+
+    /**
+     * Checks queued moves until there are none left.
+     * If a check fails the failure is reported, and the next submitted move starts a new pass.
+     */
+    private void drain() {
+        try {
+            while(true) {
+                synchronized(lock) {
+                    if(pending.isEmpty()) {
+                        running = false;
+                        return;
+                    }
+                    IntList moves = pending;
+                    pending = applying;
+                    applying = moves;
+                }
+                checkedMoves += applying.size();
+                changedErrors.clear();
+                checker.applyMoves(applying, changedErrors);
+                applying.clear();
+                publish();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error checking moves: " + e);
+            applying.clear();
+            synchronized(lock) {
+                running = false;
+            }
+        }
+    }
+
+    private void publish() {
+        int[] cells = changedErrors.toArray();
+        byte[] errors = new byte[cells.length];
+        Graph graph = checker.getGraph();
+        for(int i = 0; i < cells.length; i++) {
+            errors[i] = (byte)((graph.getCell(cells[i]).cellError ? 1 : 0) | (graph.getCell(cells[i]).numberError ? 2 : 0));
+        }
+        boolean connected = checker.areWhiteCellsInterconnected();
+        boolean ended = checker.hasEnded();
+        long moves = checkedMoves;
+        publisher.execute(() -> {
+            game.applyValidation(cells, errors, connected, ended && moves == submittedMoves);
+            onPublished.run();
+        });
+    }
+}
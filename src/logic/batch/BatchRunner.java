@@ -0,0 +1,228 @@
+package logic.batch;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import logic.Game;
+import logic.gameobjects.Graph;
+import logic.gameobjects.RoomIndex;
+import logic.solver.Puzzle;
+import logic.solver.Solution;
+import logic.solver.Solver;
+import logic.solver.SolverBackend;
+import logic.solver.sat.SatBackend;
+
+/**
+ * Runs rule checks, solving or uniqueness checks over whole level libraries without the GUI.
+ *
+ * Levels are taken from a LevelSource and processed on a pool of worker threads.
+ * At most 2 levels per thread are in flight, so memory doesn't grow with the size of the library.
+ * Results are written as soon as they are done, in order of completion.
+ * At the end the throughput and the median and 99th percentile time per level are printed to stderr.
+ *
+ * Usage: App batch check|solve|unique path [--format jsonl|csv] [--out file] [--threads n] [--backend sat|search]
+ */
+public class BatchRunner {
+    public enum Mode {
+        /**
+         * Checks that clues fit their rooms and that painted cells break no rule.
+         */
+        CHECK,
+        SOLVE,
+        UNIQUE
+    }
+
+    public enum Backend {SAT, SEARCH}
+
+    private final Mode mode;
+    private final Backend backend;
+    private final int threads;
+
+    private long[] durations = new long[1024];
+    private int durationCount = 0;
+
+    public BatchRunner(Mode mode, Backend backend, int threads) {
+        if(threads < 1) throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        this.mode = mode;
+        this.backend = backend;
+        this.threads = threads;
+    }
+
+    /**
+     * Processes all levels of the source and writes their results.
+     * @param source
+     * @param output
+     * @return number of levels processed
+     */
+    public int run(LevelSource source, ResultWriter output) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "batch-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ExecutorCompletionService<LevelResult> completion = new ExecutorCompletionService<>(executor);
+        durationCount = 0;
+        try {
+            int inFlight = 0;
+            int maxInFlight = 2 * threads;
+            while(source.hasNext() || inFlight > 0) {
+                while(inFlight < maxInFlight && source.hasNext()) {
+                    LevelSource.Level level = source.next();
+                    completion.submit(() -> process(level));
+                    inFlight++;
+                }
+                LevelResult result = completion.take().get();
+                inFlight--;
+                addDuration(result.nanos);
+                output.write(result);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Processing a level failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return durationCount;
+    }
+
+    /**
+     * @param fraction between 0 and 1
+     * @return time per level in nanoseconds of the last run at the percentile, nearest rank
+     */
+    public long percentile(double fraction) {
+        if(durationCount == 0) return 0;
+        long[] sorted = Arrays.copyOf(durations, durationCount);
+        Arrays.sort(sorted);
+        int rank = (int)Math.ceil(fraction * durationCount);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    private void addDuration(long nanos) {
+        if(durationCount == durations.length) durations = Arrays.copyOf(durations, 2 * durations.length);
+        durations[durationCount++] = nanos;
+    }
+
+    /**
+     * Processes one level on a worker thread. Exceptions of one level are reported in its result.
+     */
+    LevelResult process(LevelSource.Level level) {
+        if(level.graph == null) return new LevelResult(level.source, level.index, 0, 0, "error", level.error, 0);
+        Graph graph = level.graph;
+        long start = System.nanoTime();
+        String status;
+        String detail = null;
+        try {
+            switch(mode) {
+                case CHECK:
+                    List<String> problems = check(graph);
+                    status = problems.isEmpty() ? "ok" : "invalid";
+                    if(!problems.isEmpty()) detail = String.join("; ", problems);
+                    break;
+                case SOLVE:
+                    Solution solution = createBackend(graph).solve();
+                    status = solution == null ? "unsolvable" : "solved";
+                    if(solution != null) detail = solution.toString().trim().replace('\n', '/');
+                    break;
+                default:
+                    status = createBackend(graph).checkUniqueness().name().toLowerCase();
+            }
+        } catch (RuntimeException e) {
+            status = "error";
+            detail = e.toString();
+        }
+        return new LevelResult(level.source, level.index, graph.width, graph.height, status, detail, System.nanoTime() - start);
+    }
+
+    private SolverBackend createBackend(Graph graph) {
+        Puzzle puzzle = new Puzzle(graph);
+        return backend == Backend.SAT ? new SatBackend(puzzle) : new Solver(puzzle);
+    }
+
+    /**
+     * Checks the level without solving it.
+     * A room may only have one clue, and a clue can't be larger than the number of cells
+     * which can be black in the room without touching. Cells painted in the level must not break a rule.
+     * @return descriptions of the problems found
+     */
+    static List<String> check(Graph graph) {
+        List<String> problems = new ArrayList<>();
+        RoomIndex rooms = graph.getRooms();
+        for(int r = 0; r < rooms.getRoomCount(); r++) {
+            int clues = 0;
+            int top = graph.height, left = graph.width, bottom = -1, right = -1;
+            for(int i = 0; i < rooms.size(r); i++) {
+                int cell = rooms.member(r, i);
+                if(graph.getCell(cell).blackCount != -1) clues++;
+                top = Math.min(top, cell / graph.width);
+                bottom = Math.max(bottom, cell / graph.width);
+                left = Math.min(left, cell % graph.width);
+                right = Math.max(right, cell % graph.width);
+            }
+            int size = rooms.size(r);
+            // No two black cells touch, so a rectangle of n cells holds at most (n + 1) / 2 of them
+            boolean rectangle = (bottom - top + 1) * (right - left + 1) == size;
+            int maxBlack = rectangle ? (size + 1) / 2 : size;
+            int first = rooms.member(r, 0);
+            String name = "room at " + first / graph.width + "," + first % graph.width;
+            if(clues > 1) problems.add(name + " has " + clues + " clues");
+            if(rooms.clue(r) > maxBlack) problems.add(name + " has clue " + rooms.clue(r) + " but only room for " + maxBlack);
+        }
+
+        Game game = new Game(graph);
+        int erroneous = 0;
+        for(int i = 0; i < graph.N; i++) {
+            if(graph.getCell(i).cellError) erroneous++;
+        }
+        if(erroneous > 0) problems.add(erroneous + " painted cells break a rule");
+        if(!game.areWhiteCellsInterconnected()) problems.add("white cells are not interconnected");
+        return problems;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length < 2) {
+            System.err.println("Usage: App batch check|solve|unique path [--format jsonl|csv] [--out file] [--threads n] [--backend sat|search]");
+            System.exit(1);
+        }
+        Mode mode = Mode.valueOf(args[0].toUpperCase());
+        File path = new File(args[1]);
+        ResultWriter.Format format = ResultWriter.Format.JSONL;
+        File out = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Backend backend = Backend.SAT;
+        for(int i = 2; i + 1 < args.length; i += 2) {
+            switch(args[i]) {
+                case "--format": format = ResultWriter.Format.valueOf(args[i + 1].toUpperCase()); break;
+                case "--out": out = new File(args[i + 1]); break;
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--backend": backend = Backend.valueOf(args[i + 1].toUpperCase()); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        BatchRunner runner = new BatchRunner(mode, backend, threads);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                out == null ? System.out : new FileOutputStream(out), StandardCharsets.UTF_8));
+        long start = System.nanoTime();
+        int count;
+        try {
+            count = runner.run(new LevelSource(path), new ResultWriter(writer, format));
+        } finally {
+            if(out == null) writer.flush();
+            else writer.close();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d levels in %.2fs on %d threads, %.1f levels/s, p50 %.2fms, p99 %.2fms%n",
+                count, seconds, threads, count / seconds, runner.percentile(0.5) / 1e6, runner.percentile(0.99) / 1e6);
+    }
+}
@@ -0,0 +1,31 @@
+package logic.batch;
+
+/**
+ * Outcome of processing one level in batch mode.
+ */
+public class LevelResult {
+    public final String source;
+    public final int index;
+    public final int width;
+    public final int height;
+    /**
+     * ok or invalid when checking, solved or unsolvable when solving, the verdict when checking uniqueness,
+     * error if the level couldn't be processed
+     */
+    public final String status;
+    /**
+     * Problems found by the check, the solution as rows of # and . separated by /, or the error message
+     */
+    public final String detail;
+    public final long nanos;
+
+    public LevelResult(String source, int index, int width, int height, String status, String detail, long nanos) {
+        this.source = source;
+        this.index = index;
+        this.width = width;
+        this.height = height;
+        this.status = status;
+        this.detail = detail;
+        this.nanos = nanos;
+    }
+}
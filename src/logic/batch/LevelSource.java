@@ -0,0 +1,136 @@
+package logic.batch;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import logic.gameobjects.Graph;
+import logic.store.LevelStore;
+
+/**
+ * Levels of a library file or of all files in a directory, in order.
+ * A file is a level store, like levels.dat, or holds a serialized list of graphs, like levels.ser, or a single graph.
+ *
+ * Files of a directory are only read when the levels before them are taken.
+ * Levels of a store are read one at a time, a serialized list has to be read at once,
+ * but levels are dropped as soon as they are taken.
+ * Files which can't be read give one level without graph and with the error message.
+ */
+public class LevelSource implements Iterator<LevelSource.Level> {
+    /**
+     * A level and where it comes from.
+     */
+    public static class Level {
+        public final String source;
+        /**
+         * Index of the level in its file
+         */
+        public final int index;
+        /**
+         * Null if the file couldn't be read
+         */
+        public final Graph graph;
+        public final String error;
+
+        Level(String source, int index, Graph graph, String error) {
+            this.source = source;
+            this.index = index;
+            this.graph = graph;
+            this.error = error;
+        }
+    }
+
+    private final ArrayDeque<File> files = new ArrayDeque<>();
+    private final ArrayDeque<Level> pending = new ArrayDeque<>();
+    private LevelStore store;
+    private int storeIndex;
+
+    /**
+     * @param path a library file or a directory of level files
+     */
+    public LevelSource(File path) throws IOException {
+        if(path.isDirectory()) {
+            // Index files of level stores are opened with their data file
+            File[] children = path.listFiles(f -> f.isFile() && !f.getName().endsWith(".idx"));
+            if(children == null) throw new IOException("Can't list directory " + path);
+            Arrays.sort(children);
+            files.addAll(Arrays.asList(children));
+        } else if(path.isFile()) {
+            files.add(path);
+        } else {
+            throw new IOException("No such file or directory: " + path);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while(pending.isEmpty()) {
+            if(store != null) readFromStore();
+            else if(!files.isEmpty()) read(files.poll());
+            else break;
+        }
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public Level next() {
+        if(!hasNext()) throw new NoSuchElementException();
+        return pending.poll();
+    }
+
+    private void readFromStore() {
+        String source = store.getFile().getPath();
+        if(storeIndex < store.size()) {
+            try {
+                pending.add(new Level(source, storeIndex, store.read(storeIndex), null));
+            } catch (IOException | RuntimeException e) {
+                pending.add(new Level(source, storeIndex, null, "Error loading level: " + e.getMessage()));
+            }
+            storeIndex++;
+            return;
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+        }
+        store = null;
+    }
+
+    private void read(File file) {
+        if(LevelStore.isStore(file)) {
+            try {
+                store = new LevelStore(file);
+                storeIndex = 0;
+            } catch (IOException | RuntimeException e) {
+                pending.add(new Level(file.getPath(), 0, null, "Error loading file: " + e.getMessage()));
+            }
+            return;
+        }
+        try(ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+            Object object = ois.readObject();
+            if(object instanceof Graph) {
+                pending.add(new Level(file.getPath(), 0, (Graph)object, null));
+            } else if(object instanceof List) {
+                List<?> graphs = (List<?>)object;
+                for(int i = 0; i < graphs.size(); i++) {
+                    Object graph = graphs.get(i);
+                    if(graph instanceof Graph) {
+                        pending.add(new Level(file.getPath(), i, (Graph)graph, null));
+                    } else {
+                        pending.add(new Level(file.getPath(), i, null, "Not a level"));
+                    }
+                }
+            } else {
+                pending.add(new Level(file.getPath(), 0, null, "Not a level file"));
+            }
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            pending.add(new Level(file.getPath(), 0, null, "Error loading file: " + e.getMessage()));
+        }
+    }
+}
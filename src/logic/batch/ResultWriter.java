@@ -0,0 +1,64 @@
+package logic.batch;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Writes one line per level result, as JSON lines or CSV with a header.
+ * Every line is flushed, so results can be followed while the batch runs.
+ */
+public class ResultWriter {
+    public enum Format {JSONL, CSV}
+
+    private final Writer writer;
+    private final Format format;
+
+    public ResultWriter(Writer writer, Format format) throws IOException {
+        this.writer = writer;
+        this.format = format;
+        if(format == Format.CSV) {
+            writer.write("source,index,width,height,status,millis,detail\n");
+            writer.flush();
+        }
+    }
+
+    public void write(LevelResult result) throws IOException {
+        String millis = String.format(Locale.ROOT, "%.3f", result.nanos / 1e6);
+        if(format == Format.JSONL) {
+            writer.write("{\"source\":" + json(result.source) + ",\"index\":" + result.index
+                    + ",\"width\":" + result.width + ",\"height\":" + result.height
+                    + ",\"status\":" + json(result.status) + ",\"millis\":" + millis
+                    + ",\"detail\":" + json(result.detail) + "}\n");
+        } else {
+            writer.write(csv(result.source) + "," + result.index + "," + result.width + "," + result.height + ","
+                    + csv(result.status) + "," + millis + "," + csv(result.detail) + "\n");
+        }
+        writer.flush();
+    }
+
+    private static String json(String value) {
+        if(value == null) return "null";
+        StringBuilder sb = new StringBuilder("\"");
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch(c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if(c < 0x20) sb.append(String.format(Locale.ROOT, "\\u%04x", (int)c));
+                    else sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String csv(String value) {
+        if(value == null) return "";
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,21 @@
+package logic.format;
+
+import java.io.IOException;
+
+/**
+ * A record of a level file which can't be read. The reader skips the record, so reading can go on.
+ */
+public class FormatException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Line of the file where the error was found, counted from 1.
+     * In records of several lines this is the offending line, not the first line of the record.
+     */
+    public final int lineNumber;
+
+    public FormatException(int lineNumber, String message) {
+        super("line " + lineNumber + ": " + message);
+        this.lineNumber = lineNumber;
+    }
+}
@@ -0,0 +1,106 @@
+package logic.format;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import logic.Core;
+import logic.gameobjects.Graph;
+import logic.store.LevelLibrary;
+import logic.store.LevelStore;
+
+/**
+ * Imports levels from text files into the level store and exports the store to text files.
+ * Levels are streamed: imports are appended in batches, exports decode one level at a time,
+ * so memory doesn't depend on the number of levels. Invalid records are reported with their line and skipped,
+ * levels the export format can't hold are reported with their index and skipped.
+ *
+ * Usage: App import|export file [--format url|text]
+ */
+public class LevelConverter {
+    private static final int BATCH_SIZE = 10000;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Appends all valid levels of the reader to the store.
+     * @return number of levels imported
+     */
+    public static int importLevels(LevelReader reader, LevelStore store) throws IOException {
+        List<Graph> batch = new ArrayList<>(BATCH_SIZE);
+        int count = 0;
+        while(true) {
+            Graph graph;
+            try {
+                graph = reader.read();
+            } catch (FormatException e) {
+                System.err.println("Skipped invalid level at " + e.getMessage());
+                continue;
+            }
+            if(graph == null) break;
+            batch.add(graph);
+            if(batch.size() == BATCH_SIZE) {
+                store.appendAll(batch);
+                count += batch.size();
+                batch.clear();
+            }
+        }
+        store.appendAll(batch);
+        return count + batch.size();
+    }
+
+    /**
+     * Writes all levels of the library the writer supports.
+     * @return number of levels exported
+     */
+    public static int exportLevels(LevelLibrary library, LevelWriter writer) throws IOException {
+        int count = 0;
+        for(int i = 0; i < library.size(); i++) {
+            Graph graph = library.load(i);
+            String problem = writer.unsupported(graph);
+            if(problem != null) {
+                System.err.println("Skipped level " + i + ": " + problem);
+                continue;
+            }
+            writer.write(graph);
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2 || !args[0].equals("import") && !args[0].equals("export")) {
+            System.err.println("Usage: App import|export file [--format url|text]");
+            System.exit(1);
+        }
+        String file = args[1];
+        LevelFormat format = args.length > 3 && args[2].equals("--format")
+                ? LevelFormat.valueOf(args[3].toUpperCase()) : LevelFormat.forFile(file);
+
+        long start = System.nanoTime();
+        int count;
+        if(args[0].equals("import")) {
+            try(LevelReader reader = format.reader(new BufferedReader(
+                        new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE));
+                    LevelStore store = Core.openStore()) {
+                count = importLevels(reader, store);
+            }
+        } else {
+            try(LevelWriter writer = format.writer(new BufferedWriter(
+                        new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE));
+                    LevelLibrary library = Core.openLibrary(1)) {
+                count = exportLevels(library, writer);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%sed %d levels in %.2fs, %.0f levels/s%n", args[0].equals("import") ? "Import" : "Export",
+                count, seconds, count / seconds);
+    }
+}
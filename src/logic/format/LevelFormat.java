@@ -0,0 +1,33 @@
+package logic.format;
+
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Text formats levels can be imported from and exported to.
+ */
+public enum LevelFormat {
+    /**
+     * One puzz.link URL per line
+     */
+    URL,
+    /**
+     * pzprjs text files
+     */
+    TEXT;
+
+    public LevelReader reader(Reader reader) {
+        return this == URL ? new PuzzLinkReader(reader) : new PzprReader(reader);
+    }
+
+    public LevelWriter writer(Writer writer) {
+        return this == URL ? new PuzzLinkWriter(writer) : new PzprWriter(writer);
+    }
+
+    /**
+     * @return TEXT for files ending in .txt or .pzpr, URL otherwise
+     */
+    public static LevelFormat forFile(String name) {
+        return name.endsWith(".txt") || name.endsWith(".pzpr") ? TEXT : URL;
+    }
+}
@@ -0,0 +1,17 @@
+package logic.format;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import logic.gameobjects.Graph;
+
+/**
+ * Reads levels one by one from a text stream, so memory doesn't depend on the size of the file.
+ */
+public interface LevelReader extends Closeable {
+    /**
+     * @return the next level, or null at the end of the stream
+     * @throws FormatException if the next record is invalid, it is skipped and read can be called again
+     */
+    Graph read() throws IOException;
+}
@@ -0,0 +1,21 @@
+package logic.format;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+import logic.gameobjects.Graph;
+
+/**
+ * Writes levels one by one to a text stream.
+ */
+public interface LevelWriter extends Closeable, Flushable {
+    void write(Graph graph) throws IOException;
+
+    /**
+     * @return why the level can't be written without losing part of it, or null if it can
+     */
+    default String unsupported(Graph graph) {
+        return null;
+    }
+}
@@ -0,0 +1,142 @@
+package logic.format;
+
+import logic.gameobjects.Graph;
+import logic.gameobjects.RoomIndex;
+
+/**
+ * puzz.link (pzprjs) URLs of Heyawake puzzles, e.g. https://puzz.link/p?heyawake/6/6/...
+ *
+ * After the width and height, walls are encoded 5 edges per base 32 digit, most significant bit first,
+ * first the vertical edges and then the horizontal edges in row major order, each padded to a full digit.
+ * This is the same order as the edges of a Graph. Clues follow room by room, rooms in order of their first cell:
+ * a hex digit for clues below 16, - and 2 hex digits below 256, + and 3 hex digits below 4096,
+ * g to z skip 1 to 20 rooms without clue. A . (unknown clue) is read as no clue.
+ */
+public class PuzzLinkFormat {
+    public static final String PREFIX = "https://puzz.link/p?heyawake/";
+    private static final String TYPE = "heyawake/";
+
+    private PuzzLinkFormat() {}
+
+    public static String encode(Graph graph) {
+        StringBuilder sb = new StringBuilder(PREFIX.length() + graph.getEdgeCount() / 5 + graph.N / 4);
+        sb.append(PREFIX).append(graph.width).append('/').append(graph.height).append('/');
+        int verticalEdges = graph.height * (graph.width - 1);
+        encodeWalls(graph, 0, verticalEdges, sb);
+        encodeWalls(graph, verticalEdges, graph.getEdgeCount(), sb);
+
+        RoomIndex rooms = graph.getRooms();
+        int skipped = 0;
+        for(int r = 0; r < rooms.getRoomCount(); r++) {
+            int clue = rooms.clue(r);
+            if(clue < 0 || clue >= 4096) {
+                if(++skipped == 20) {
+                    sb.append('z');
+                    skipped = 0;
+                }
+                continue;
+            }
+            if(skipped > 0) {
+                sb.append(Character.forDigit(15 + skipped, 36));
+                skipped = 0;
+            }
+            if(clue < 16) sb.append(Character.forDigit(clue, 16));
+            else if(clue < 256) sb.append('-').append(hex(clue, 2));
+            else sb.append('+').append(hex(clue, 3));
+        }
+        if(skipped > 0) sb.append(Character.forDigit(15 + skipped, 36));
+        return sb.toString();
+    }
+
+    /**
+     * @param url a puzz.link URL, or only the part starting with heyawake/
+     * @throws IllegalArgumentException if the URL isn't a valid Heyawake puzzle
+     */
+    public static Graph decode(String url) {
+        int start = url.indexOf(TYPE);
+        if(start < 0) throw new IllegalArgumentException("Not a Heyawake URL");
+        String[] parts = url.substring(start + TYPE.length()).split("/");
+        // Flags like v: may come before the size
+        int p = 0;
+        while(p < parts.length && !parts[p].isEmpty() && !Character.isDigit(parts[p].charAt(0))) p++;
+        if(parts.length < p + 2) throw new IllegalArgumentException("Missing board size");
+        int width, height;
+        try {
+            width = Integer.parseInt(parts[p]);
+            height = Integer.parseInt(parts[p + 1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid board size: " + parts[p] + "x" + parts[p + 1]);
+        }
+        if(width < 1 || height < 1 || (long)width * height > 1 << 24)
+            throw new IllegalArgumentException("Invalid board size: " + width + "x" + height);
+        String body = parts.length > p + 2 ? parts[p + 2] : "";
+
+        Graph graph = new Graph(width, height);
+        int verticalEdges = height * (width - 1);
+        int position = decodeWalls(graph, 0, verticalEdges, body, 0);
+        position = decodeWalls(graph, verticalEdges, graph.getEdgeCount(), body, position);
+
+        RoomIndex rooms = graph.getRooms();
+        int room = 0;
+        while(position < body.length() && room < rooms.getRoomCount()) {
+            char c = body.charAt(position++);
+            int clue = -1;
+            if(c >= '0' && c <= '9' || c >= 'a' && c <= 'f') {
+                clue = Character.digit(c, 16);
+            } else if(c == '-') {
+                clue = parseHex(body, position, 2);
+                position += 2;
+            } else if(c == '+') {
+                clue = parseHex(body, position, 3);
+                position += 3;
+            } else if(c >= 'g' && c <= 'z') {
+                room += Character.digit(c, 36) - 16;
+            } else if(c != '.') {
+                throw new IllegalArgumentException("Invalid clue character: " + c);
+            }
+            if(clue >= 0) graph.setBlackCount(rooms.member(room, 0), clue);
+            room++;
+        }
+        return graph;
+    }
+
+    private static void encodeWalls(Graph graph, int from, int to, StringBuilder sb) {
+        for(int i = from; i < to; i += 5) {
+            int digit = 0;
+            for(int bit = 0; bit < 5; bit++) {
+                if(i + bit < to && (graph.getEdgeFlags(i + bit) & Graph.WALL) != 0) digit |= 16 >> bit;
+            }
+            sb.append(Character.forDigit(digit, 32));
+        }
+    }
+
+    /**
+     * @return position after the walls
+     */
+    private static int decodeWalls(Graph graph, int from, int to, String body, int position) {
+        for(int i = from; i < to; i += 5) {
+            if(position >= body.length()) throw new IllegalArgumentException("Walls truncated");
+            int digit = Character.digit(body.charAt(position++), 32);
+            if(digit < 0) throw new IllegalArgumentException("Invalid wall character: " + body.charAt(position - 1));
+            for(int bit = 0; bit < 5 && i + bit < to; bit++) {
+                if((digit & (16 >> bit)) != 0) graph.setEdgeFlags(i + bit, Graph.WALL);
+            }
+        }
+        return position;
+    }
+
+    private static String hex(int value, int digits) {
+        String hex = Integer.toHexString(value);
+        while(hex.length() < digits) hex = "0" + hex;
+        return hex;
+    }
+
+    private static int parseHex(String body, int position, int digits) {
+        if(position + digits > body.length()) throw new IllegalArgumentException("Clue truncated");
+        try {
+            return Integer.parseInt(body.substring(position, position + digits), 16);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid clue: " + body.substring(position, position + digits));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package logic.format;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.Reader;
+
+import logic.gameobjects.Graph;
+
+/**
+ * Reads one puzz.link URL per line. Blank lines and lines starting with # are skipped.
+ */
+public class PuzzLinkReader implements LevelReader {
+    private final LineNumberReader reader;
+
+    public PuzzLinkReader(Reader reader) {
+        this.reader = new LineNumberReader(reader, 1 << 16);
+    }
+
+    @Override
+    public Graph read() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if(line == null) return null;
+            line = line.trim();
+        } while(line.isEmpty() || line.startsWith("#"));
+        try {
+            return PuzzLinkFormat.decode(line);
+        } catch (IllegalArgumentException e) {
+            throw new FormatException(reader.getLineNumber(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,33 @@
+package logic.format;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import logic.gameobjects.Graph;
+
+/**
+ * Writes one puzz.link URL per line.
+ */
+public class PuzzLinkWriter implements LevelWriter {
+    private final Writer writer;
+
+    public PuzzLinkWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(Graph graph) throws IOException {
+        writer.write(PuzzLinkFormat.encode(graph));
+        writer.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
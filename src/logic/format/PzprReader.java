@@ -0,0 +1,122 @@
+package logic.format;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.Reader;
+
+import logic.gameobjects.Graph;
+
+/**
+ * Reads Heyawake puzzles in the text format of pzprjs files (pzprv3), any number of them one after the other.
+ *
+ * A record starts with the lines pzprv3, heyawake, the number of rows, the number of columns and the number of rooms.
+ * Then come one line per row with the room of every cell, and one line per row with the clues, . where there is none.
+ * Anything after that up to the next pzprv3 line, like the answer grid, is skipped. Lines may end with /.
+ */
+public class PzprReader implements LevelReader {
+    static final String HEADER = "pzprv3";
+    static final String TYPE = "heyawake";
+
+    private final LineNumberReader reader;
+    private String pushedBack;
+
+    public PzprReader(Reader reader) {
+        this.reader = new LineNumberReader(reader, 1 << 16);
+    }
+
+    @Override
+    public Graph read() throws IOException {
+        String line;
+        do {
+            line = nextLine();
+            if(line == null) return null;
+        } while(!line.equals(HEADER));
+
+        if(!TYPE.equals(expectLine())) throw error("Not a Heyawake puzzle");
+        int height = parseInt(expectLine());
+        int width = parseInt(expectLine());
+        if(width < 1 || height < 1 || (long)width * height > 1 << 24) throw error("Invalid board size: " + width + "x" + height);
+        int roomCount = parseInt(expectLine());
+
+        int[] roomOf = new int[width * height];
+        for(int i = 0; i < height; i++) {
+            String[] tokens = expectRow(width);
+            for(int j = 0; j < width; j++) {
+                int room = parseInt(tokens[j]);
+                if(room < 0 || room >= roomCount) throw error("Invalid room: " + room);
+                roomOf[i * width + j] = room;
+            }
+        }
+        Graph graph = new Graph(width, height);
+        for(int i = 0; i < height; i++) {
+            for(int j = 0; j < width; j++) {
+                int cell = i * width + j;
+                if(j + 1 < width && roomOf[cell] != roomOf[cell + 1]) graph.setEdgeFlags(graph.verticalEdgeIndex(i, j), Graph.WALL);
+                if(i + 1 < height && roomOf[cell] != roomOf[cell + width]) graph.setEdgeFlags(graph.horizontalEdgeIndex(i, j), Graph.WALL);
+            }
+        }
+        for(int i = 0; i < height; i++) {
+            String[] tokens = expectRow(width);
+            for(int j = 0; j < width; j++) {
+                // - is an unknown clue
+                if(tokens[j].equals(".") || tokens[j].equals("-")) continue;
+                int clue = parseInt(tokens[j]);
+                if(clue < 0) throw error("Invalid clue: " + clue);
+                graph.setBlackCount(i * width + j, clue);
+            }
+        }
+        return graph;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * @return the next line without surrounding spaces and the trailing /, or null at the end
+     */
+    private String nextLine() throws IOException {
+        if(pushedBack != null) {
+            String line = pushedBack;
+            pushedBack = null;
+            return line;
+        }
+        String line = reader.readLine();
+        if(line == null) return null;
+        line = line.trim();
+        if(line.endsWith("/")) line = line.substring(0, line.length() - 1).trim();
+        return line;
+    }
+
+    /**
+     * Reads a line of the current record. The start of the next record is kept for the next read.
+     */
+    private String expectLine() throws IOException {
+        String line = nextLine();
+        if(line == null) throw error("Record truncated");
+        if(line.equals(HEADER)) {
+            pushedBack = line;
+            throw error("Record truncated");
+        }
+        return line;
+    }
+
+    private String[] expectRow(int width) throws IOException {
+        String[] tokens = expectLine().split("\\s+");
+        if(tokens.length != width) throw error("Expected " + width + " cells, found " + tokens.length);
+        return tokens;
+    }
+
+    private int parseInt(String token) throws FormatException {
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw error("Not a number: " + token);
+        }
+    }
+
+    private FormatException error(String message) {
+        return new FormatException(reader.getLineNumber(), message);
+    }
+}
@@ -0,0 +1,76 @@
+package logic.format;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import logic.gameobjects.Graph;
+import logic.gameobjects.RoomIndex;
+
+/**
+ * Writes Heyawake puzzles in the text format of pzprjs files, see PzprReader. The answer grid is left empty.
+ * The format only stores the room of every cell, so walls between two cells of the same room can't be written,
+ * such levels are reported by unsupported.
+ */
+public class PzprWriter implements LevelWriter {
+    private final Writer writer;
+    private final StringBuilder sb = new StringBuilder();
+
+    public PzprWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(Graph graph) throws IOException {
+        RoomIndex rooms = graph.getRooms();
+        sb.setLength(0);
+        sb.append(PzprReader.HEADER).append("/\n").append(PzprReader.TYPE).append("/\n");
+        sb.append(graph.height).append("/\n").append(graph.width).append("/\n").append(rooms.getRoomCount()).append("/\n");
+        for(int i = 0; i < graph.height; i++) {
+            for(int j = 0; j < graph.width; j++) sb.append(rooms.roomOf(graph.getCellIndex(i, j))).append(' ');
+            sb.append("/\n");
+        }
+        for(int i = 0; i < graph.height; i++) {
+            for(int j = 0; j < graph.width; j++) {
+                int clue = graph.getCell(i, j).blackCount;
+                if(clue == -1) sb.append('.');
+                else sb.append(clue);
+                sb.append(' ');
+            }
+            sb.append("/\n");
+        }
+        for(int i = 0; i < graph.height; i++) {
+            for(int j = 0; j < graph.width; j++) sb.append(". ");
+            sb.append("/\n");
+        }
+        writer.append(sb);
+    }
+
+    @Override
+    public String unsupported(Graph graph) {
+        RoomIndex rooms = graph.getRooms();
+        for(int i = 0; i < graph.height; i++) {
+            for(int j = 0; j < graph.width; j++) {
+                int cell = graph.getCellIndex(i, j);
+                if(j + 1 < graph.width && isInnerWall(graph, rooms, graph.verticalEdgeIndex(i, j), cell, cell + 1)
+                        || i + 1 < graph.height && isInnerWall(graph, rooms, graph.horizontalEdgeIndex(i, j), cell, cell + graph.width)) {
+                    return "wall inside a room at row " + (i + 1) + ", column " + (j + 1);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isInnerWall(Graph graph, RoomIndex rooms, int edgeIndex, int cell1, int cell2) {
+        return (graph.getEdgeFlags(edgeIndex) & Graph.WALL) != 0 && rooms.roomOf(cell1) == rooms.roomOf(cell2);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -6,6 +6,8 @@ import java.io.Serializable;
  * Represents a cell on the board. 
  */
 public class Cell implements Serializable{
+    private static final long serialVersionUID = 5576362208938217894L;
+
     public enum State {BLACK, WHITE, UNPAINTED}
     public State state = State.UNPAINTED;
     protected int row;
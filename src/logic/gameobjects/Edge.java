@@ -4,12 +4,33 @@ import java.io.Serializable;
 
 /**
  * The Edge class represents relations between two cells.
+ * Edges are stored as flags in the Graph, an Edge object is a view of these flags.
  */
 public class Edge implements Serializable {
+    private static final long serialVersionUID = -7601551135506645076L;
+
     public boolean isWall = false; 
     public boolean areBlackNeighbours = false; 
     public boolean areWhitekNeighbours = false; 
     public boolean areNeighbours = false;
+
+    public Edge() {}
+
+    Edge(int flags) {
+        isWall = (flags & Graph.WALL) != 0;
+        areBlackNeighbours = (flags & Graph.BLACK_NEIGHBOURS) != 0;
+        areWhitekNeighbours = (flags & Graph.WHITE_NEIGHBOURS) != 0;
+        areNeighbours = true;
+    }
+
+    /**
+     * @return the relations packed into Graph edge flags
+     */
+    int toFlags() {
+        return (isWall ? Graph.WALL : 0)
+            | (areBlackNeighbours ? Graph.BLACK_NEIGHBOURS : 0)
+            | (areWhitekNeighbours ? Graph.WHITE_NEIGHBOURS : 0);
+    }
     
     public void setAreNeighbours(boolean value) {
         areNeighbours = value;
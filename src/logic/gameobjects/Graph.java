@@ -1,35 +1,88 @@
 package logic.gameobjects;
 
 import java.awt.Point;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.function.Predicate;
 
+import logic.metrics.Counter;
+import logic.metrics.FloodFillEvent;
+import logic.metrics.Metrics;
+import logic.metrics.Timer;
+
 
 public class Graph implements Serializable {
+    private static final long serialVersionUID = -4752371475558664128L;
+
     /**
-     * Grid Size
+     * Size of the board used when no size is given.
      */
-    public final int S = 6;
-    public final int N = S * S;
+    public static final int DEFAULT_SIZE = 6;
 
-    
-    public ArrayList<ArrayList<Cell>> cells;
-    
     /**
-     * Adjacency matrix of edges. Only edges between neighbouring cells are used!
+     * Grid Size. The board has width columns and height rows, N cells in total.
      */
-    public ArrayList<ArrayList<Edge>> edges;
+    public final int width;
+    public final int height;
+    public final int N;
+
+    /**
+     * Edge flags. Every edge of the board is stored as a single byte holding these bits.
+     */
+    public static final int WALL = 1;
+    public static final int BLACK_NEIGHBOURS = 2;
+    public static final int WHITE_NEIGHBOURS = 4;
+
+    /**
+     * Cells of the board in row major order. Use getCellIndex to address them.
+     */
+    public Cell[] cells;
+
+    /**
+     * Flags of all edges between neighbouring cells.
+     * The first height * (width - 1) entries are the vertical edges (between a cell and its right neighbour) in row major order,
+     * the rest are the horizontal edges (between a cell and its bottom neighbour) in row major order.
+     */
+    protected byte[] edges;
+
+    /**
+     * Number of solutions found when the level was last checked. Reset to UNKNOWN when walls or clues change.
+     */
+    private Verdict verdict = Verdict.UNKNOWN;
 
     public Graph() {
+        this(DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+
+    public Graph(int width, int height) {
+        if(width < 1 || height < 1) throw new IllegalArgumentException("Invalid board size: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        this.N = width * height;
         initCells();
         initEdges();
-    }  
+    }
+
+    /**
+     * Creates a graph from already initialized cells and edges. Used by deserialization.
+     */
+    private Graph(int width, int height, Cell[] cells, byte[] edges) {
+        this.width = width;
+        this.height = height;
+        this.N = width * height;
+        this.cells = cells;
+        this.edges = edges;
+    }
 
     /**
-     * A Pair represents two ends of an Edge. Stores the index of the cells on the ends of the Edge.  
+     * A Pair represents two ends of an Edge. Stores the index of the cells on the ends of the Edge.
      */
     static public class Pair {
         public int end1;
@@ -41,7 +94,7 @@ public class Graph implements Serializable {
     }
 
     public int getCellIndex(int row, int column) {
-        return row * S + column;
+        return row * width + column;
     }
 
     public int getCellIndex(Cell c) {
@@ -49,8 +102,11 @@ public class Graph implements Serializable {
     }
 
     public Cell getCell(int cellIndex) {
-        Point coords = cellIndexToCoordinate(cellIndex);
-        return cells.get(coords.x).get(coords.y);
+        return cells[cellIndex];
+    }
+
+    public Cell getCell(int row, int column) {
+        return cells[getCellIndex(row, column)];
     }
 
 
@@ -59,59 +115,246 @@ public class Graph implements Serializable {
      * @return cell coordinates in (row, column) format
      */
     public Point cellIndexToCoordinate(int cellIndex) {
-        return new Point(cellIndex / S, cellIndex % S);
-    } 
+        return new Point(cellIndex / width, cellIndex % width);
+    }
+
+    /**
+     * @return index of the edge between a cell and its right neighbour
+     */
+    public int verticalEdgeIndex(int row, int column) {
+        return row * (width - 1) + column;
+    }
+
+    /**
+     * @return index of the edge between a cell and its bottom neighbour
+     */
+    public int horizontalEdgeIndex(int row, int column) {
+        return height * (width - 1) + row * width + column;
+    }
+
+    /**
+     * @param cell1 index of first end of the edge
+     * @param cell2 index of second end of the edge
+     * @return index of the edge between the two cells or -1 if they are not neighbours
+     */
+    public int edgeIndex(int cell1, int cell2) {
+        int first = Math.min(cell1, cell2);
+        int second = Math.max(cell1, cell2);
+        if(first < 0 || second >= N) return -1;
+        if(second - first == 1 && first % width != width - 1)
+            return verticalEdgeIndex(first / width, first % width);
+        if(second - first == width)
+            return horizontalEdgeIndex(first / width, first % width);
+        return -1;
+    }
+
+    /**
+     * @return number of edges between neighbouring cells, see edges
+     */
+    public int getEdgeCount() {
+        return edges.length;
+    }
+
+    public int getEdgeFlags(int edgeIndex) {
+        return edges[edgeIndex];
+    }
+
+    public void setEdgeFlags(int edgeIndex, int flags) {
+        if(((edges[edgeIndex] ^ flags) & WALL) != 0) {
+            roomsChanged = true;
+            segmentsChanged = true;
+            verdict = Verdict.UNKNOWN;
+        }
+        edges[edgeIndex] = (byte) flags;
+    }
+
+    /**
+     * @return true if there is a wall between the two neighbouring cells
+     */
+    public boolean isWall(int cell1, int cell2) {
+        return (edges[edgeIndex(cell1, cell2)] & WALL) != 0;
+    }
+
+    /**
+     * Collects the indices of the neighbours of a cell in increasing order: top, left, right, bottom.
+     * @param cellIndex
+     * @param out array of at least 4 elements, receives the neighbour indices
+     * @return number of neighbours
+     */
+    public int neighbours(int cellIndex, int[] out) {
+        int row = cellIndex / width;
+        int column = cellIndex % width;
+        int count = 0;
+        if(row > 0) out[count++] = cellIndex - width;
+        if(column > 0) out[count++] = cellIndex - 1;
+        if(column < width - 1) out[count++] = cellIndex + 1;
+        if(row < height - 1) out[count++] = cellIndex + width;
+        return count;
+    }
+
+    /**
+     * @param cellIndex
+     * @param flag edge flag to look for
+     * @return true if any edge between the cell and its neighbours has the flag set
+     */
+    public boolean anyEdge(int cellIndex, int flag) {
+        int row = cellIndex / width;
+        int column = cellIndex % width;
+        return (row > 0 && (edges[horizontalEdgeIndex(row - 1, column)] & flag) != 0)
+            || (column > 0 && (edges[verticalEdgeIndex(row, column - 1)] & flag) != 0)
+            || (column < width - 1 && (edges[verticalEdgeIndex(row, column)] & flag) != 0)
+            || (row < height - 1 && (edges[horizontalEdgeIndex(row, column)] & flag) != 0);
+    }
 
     /**
      * Executes given function on edge defined by two cell indices.
+     * The function receives a view of the stored flags, changes made to it are written back.
      * @param cell1 index of first end of the edge
      * @param cell2 index of second end of the edge
      * @param fn function to execute on edge
      */
     public void acceptEdge(int cell1, int cell2, Consumer<Edge> fn) {
-        fn.accept(edges.get(cell1).get(cell2));
-        fn.accept(edges.get(cell2).get(cell1));
+        int index = edgeIndex(cell1, cell2);
+        if(index == -1) throw new IllegalArgumentException("Cells " + cell1 + " and " + cell2 + " are not neighbours");
+        acceptEdge(index, fn);
+    }
+
+    private void acceptEdge(int edgeIndex, Consumer<Edge> fn) {
+        int flags = edges[edgeIndex];
+        Edge e = new Edge(flags);
+        fn.accept(e);
+        // Only write back on change, so an outer view can not overwrite changes made by a nested call
+        if(e.toFlags() != flags) setEdgeFlags(edgeIndex, e.toFlags());
+    }
+
+    /**
+     * Index of rooms, built on first use.
+     */
+    private transient RoomIndex rooms;
+
+    /**
+     * Set when a wall changes, the room index is rebuilt on next use.
+     */
+    private transient boolean roomsChanged;
+
+    /**
+     * Returns the index of rooms. The index is rebuilt here if walls changed since it was last used,
+     * so it should be requested again after editing walls.
+     * Black counts of rooms are not updated automatically, see RoomIndex.cellStateChanged.
+     * @return the room index
+     */
+    public RoomIndex getRooms() {
+        if(rooms == null) {
+            rooms = new RoomIndex(this);
+        } else if(roomsChanged) {
+            rooms.rebuild();
+        }
+        roomsChanged = false;
+        return rooms;
+    }
+
+    /**
+     * Segments of rows and columns, built on first use.
+     */
+    private transient RunSegments segments;
+
+    /**
+     * Set when a wall changes, the segments are rebuilt on next use.
+     */
+    private transient boolean segmentsChanged;
+
+    /**
+     * Returns the segments of rows and columns between walls. Rebuilt here if walls changed since last use.
+     * @return the run segments
+     */
+    public RunSegments getRunSegments() {
+        if(segments == null) {
+            segments = new RunSegments(this);
+        } else if(segmentsChanged) {
+            segments.rebuild();
+        }
+        segmentsChanged = false;
+        return segments;
     }
 
     /**
-     * Executes given function on each cell. 
+     * Sets the expected number of black cells of the room on a cell.
+     * @param cellIndex
+     * @param blackCount expected number of black cells, -1 if there is no clue
+     */
+    public void setBlackCount(int cellIndex, int blackCount) {
+        if(cells[cellIndex].blackCount != blackCount) verdict = Verdict.UNKNOWN;
+        cells[cellIndex].blackCount = blackCount;
+        if(rooms != null && !roomsChanged) rooms.updateClue(rooms.roomOf(cellIndex));
+    }
+
+    public Verdict getVerdict() {
+        return verdict;
+    }
+
+    public void setVerdict(Verdict verdict) {
+        this.verdict = verdict;
+    }
+
+    /**
+     * Executes given function on each cell.
      * @param fn function to execute
      */
     public void forEachCell(Consumer<Cell> fn) {
-        for(int i = 0; i < S ; i++) {
-            for(int j = 0; j < S; j++) {
-                fn.accept(cells.get(i).get(j));
-            }
+        for(int i = 0; i < N; i++) {
+            fn.accept(cells[i]);
         }
     }
-    
+
+    /**
+     * Iterates over the edges between vertically neighbouring cells, column by column.
+     * @param fn
+     */
     public void forEachHorizontalEdge(BiConsumer<Edge, Pair> fn) {
-        for(int i = 0; i < S; i++) {
-            for(int j = 0; j < S - 1; j++) {
-                // Horizontal edges
-                int cell2Index = getCellIndex(j, i);
-                int bottomNeighbourIndex = getCellIndex(j + 1, i);
-                acceptEdge(cell2Index, bottomNeighbourIndex, e -> fn.accept(e, new Pair(cell2Index, bottomNeighbourIndex)));
-            }
-        }    
+        for(int i = 0; i < width; i++) {
+            forEachEdgeInColumn(i, fn);
+        }
     }
-    
+
     /**
-     * 
+     * Iterates over the edges between vertically neighbouring cells of a column, from top to bottom.
+     * @param column
+     * @param fn
+     */
+    public void forEachEdgeInColumn(int column, BiConsumer<Edge, Pair> fn) {
+        for(int j = 0; j < height - 1; j++) {
+            // Horizontal edges
+            int cell2Index = getCellIndex(j, column);
+            int bottomNeighbourIndex = getCellIndex(j + 1, column);
+            acceptEdge(horizontalEdgeIndex(j, column), e -> fn.accept(e, new Pair(cell2Index, bottomNeighbourIndex)));
+        }
+    }
+
+    /**
+     * Iterates over the edges between horizontally neighbouring cells, row by row.
      * @param fn
      */
     public void forEachVerticalEdge(BiConsumer<Edge, Pair> fn) {
-        for(int i = 0; i < S; i++) {
-            for(int j = 0; j < S - 1; j++) {
-                // Vertical edges
-                int cell1Index = getCellIndex(i, j);
-                int rightNeighbourIndex = getCellIndex(i, j + 1);
-                acceptEdge(cell1Index, rightNeighbourIndex, e -> fn.accept(e, new Pair(cell1Index, rightNeighbourIndex)));
-            }
-        }    
+        for(int i = 0; i < height; i++) {
+            forEachEdgeInRow(i, fn);
+        }
+    }
+
+    /**
+     * Iterates over the edges between horizontally neighbouring cells of a row, from left to right.
+     * @param row
+     * @param fn
+     */
+    public void forEachEdgeInRow(int row, BiConsumer<Edge, Pair> fn) {
+        for(int j = 0; j < width - 1; j++) {
+            // Vertical edges
+            int cell1Index = getCellIndex(row, j);
+            int rightNeighbourIndex = getCellIndex(row, j + 1);
+            acceptEdge(verticalEdgeIndex(row, j), e -> fn.accept(e, new Pair(cell1Index, rightNeighbourIndex)));
+        }
     }
 
-    
+
 
 
     /**
@@ -126,19 +369,8 @@ public class Graph implements Serializable {
      * @param fn function to be executed on the edges
      */
     public void forEachEdge(BiConsumer<Edge, Pair> fn) {
-        for(int i = 0; i < S; i++) {
-            for(int j = 0; j < S - 1; j++) {
-                // Vertical edges
-                int cell1Index = getCellIndex(i, j);
-                int rightNeighbourIndex = getCellIndex(i, j + 1);
-                acceptEdge(cell1Index, rightNeighbourIndex, e -> fn.accept(e, new Pair(cell1Index, rightNeighbourIndex)));
-                
-                // Horizontal edges
-                int cell2Index = getCellIndex(j, i);
-                int bottomNeighbourIndex = getCellIndex(j + 1, i);
-                acceptEdge(cell2Index, bottomNeighbourIndex, e -> fn.accept(e, new Pair(cell2Index, bottomNeighbourIndex)));
-            }
-        }
+        forEachVerticalEdge(fn);
+        forEachHorizontalEdge(fn);
     }
 
 
@@ -148,37 +380,52 @@ public class Graph implements Serializable {
      * @param fn function to execute on each edge. It takes an edge as an argument.
      * */
     public void iterateNeighbours(int cellIndex, Consumer<Edge> fn) {
-        iterateNeighbours(cellIndex, e -> fn.accept(e));
+        iterateNeighbours(cellIndex, (e, i) -> fn.accept(e));
     }
 
     /**
      * Executes function on each neighbour of the given cell.
+     * Neighbours are visited in increasing index order: top, left, right, bottom.
      * @param cellIndex index of the given cell.
-     * @param fn function to execute on each edge. It takes two arguments, an Edge, and an Integer. 
-     * The Integer represents the index of the neighbour in the current iteration.   
+     * @param fn function to execute on each edge. It takes two arguments, an Edge, and an Integer.
+     * The Integer represents the index of the neighbour in the current iteration.
      */
     public void iterateNeighbours(int cellIndex, BiConsumer<Edge, Integer> fn) {
-        int i = 0;
-        for(Edge e: edges.get(cellIndex)) {
-            if(e.areNeighbours)
-                fn.accept(e, i);
-            i++;
-        }
+        int row = cellIndex / width;
+        int column = cellIndex % width;
+        if(row > 0)
+            acceptEdge(horizontalEdgeIndex(row - 1, column), e -> fn.accept(e, cellIndex - width));
+        if(column > 0)
+            acceptEdge(verticalEdgeIndex(row, column - 1), e -> fn.accept(e, cellIndex - 1));
+        if(column < width - 1)
+            acceptEdge(verticalEdgeIndex(row, column), e -> fn.accept(e, cellIndex + 1));
+        if(row < height - 1)
+            acceptEdge(horizontalEdgeIndex(row, column), e -> fn.accept(e, cellIndex + width));
     }
 
     /**
      * Performs flood fill starting from cellIndex. Executes function on each cell.
-     * Flooding stops on hitting walls 
+     * Flooding stops on hitting walls
      * @param cellIndex starting cell index
      * @param fn is executed on each cell
      */
     public void floodFill(int cellIndex, Consumer<Cell> fn) {
-        conditionalFloodFill(cellIndex, e -> e.isWall, fn);
+        fill(cellIndex, passableFlags(WALL, 0), i -> fn.accept(cells[i]));
     }
-    
+
+    /**
+     * Performs flood fill starting from cellIndex. Flooding stops on hitting walls.
+     * @param cellIndex starting cell index
+     * @param out is cleared and filled with the indices of the explored cells, a new list is created if null
+     * @return list of the indices of the explored cells
+     */
+    public IntList floodFill(int cellIndex, IntList out) {
+        return conditionalFloodFill(cellIndex, WALL, 0, out);
+    }
+
     /**
      * Performs flood fill starting from cellIndex. Executes function on each cell.
-     * Flood fill stops when stopCondition is met. 
+     * Flood fill stops when stopCondition is met.
      * @param cellIndex starting cell index
      * @param stopCondition flooding stops if this condition is met
      * @param fn is executed on each cell
@@ -186,68 +433,271 @@ public class Graph implements Serializable {
      */
     public boolean[] conditionalFloodFill(int cellIndex, Predicate<Edge> stopCondition, Consumer<Cell> fn) {
         boolean[] filled = new boolean[N];
-        filled[cellIndex] = true;
-        fn.accept(getCell(cellIndex));
-        _conditionalFloodFill(cellIndex, filled, stopCondition, fn);
+        fill(cellIndex, passableFlags(stopCondition), i -> {
+            filled[i] = true;
+            fn.accept(cells[i]);
+        });
         return filled;
     }
 
-    private void _conditionalFloodFill(int cellIndex, boolean[] filled,  Predicate<Edge> stopCondition, Consumer<Cell> fn) {
-        iterateNeighbours(cellIndex, (e, i)-> {
-            if(stopCondition.test(e) || filled[i]) return;
-                filled[i] = true;
-                fn.accept(getCell(i));
-                _conditionalFloodFill(i, filled, stopCondition, fn);
-            });
+    /**
+     * Performs flood fill starting from cellIndex.
+     * Flooding crosses an edge only if its flags masked with mask equal value,
+     * e.g. (WALL, 0) floods a room, (WHITE_NEIGHBOURS, WHITE_NEIGHBOURS) floods white cells.
+     * @param cellIndex starting cell index
+     * @param mask edge flags to test
+     * @param value required value of the tested flags
+     * @param out is cleared and filled with the indices of the explored cells, a new list is created if null
+     * @return list of the indices of the explored cells
+     */
+    public IntList conditionalFloodFill(int cellIndex, int mask, int value, IntList out) {
+        if(out == null) out = new IntList();
+        out.clear();
+        fill(cellIndex, passableFlags(mask, value), out::add);
+        return out;
+    }
 
+    /**
+     * Reusable buffers of the flood fill.
+     * A cell is explored if its stamp equals the stamp of the current fill, so buffers never have to be cleared.
+     */
+    private static class FillScratch {
+        final int[] stamps;
+        final int[] stack;
+        int stamp = 0;
+
+        FillScratch(int n) {
+            stamps = new int[n];
+            stack = new int[n];
+        }
+
+        int nextStamp() {
+            if(++stamp == 0) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
     }
 
     /**
-     * Returns the first cell from the graph. 
-     * Which meets given condition. 
+     * Scratch buffers of the next flood fill. Null while a fill is running, so nested fills get their own buffers.
+     * Flood fills of the same graph must not run concurrently.
+     */
+    private transient FillScratch fillScratch;
+
+    private static final Timer FLOOD_FILL_TIMER = Metrics.timer("floodFill");
+    private static final Counter FLOOD_FILL_CELLS = Metrics.counter("floodFill.cells");
+
+    /**
+     * Iterative flood fill. Each cell is pushed to the stack at most once.
+     * @param cellIndex starting cell index
+     * @param passable bit f is set if an edge with flags f can be crossed
+     * @param visitor is called with the index of each explored cell
+     */
+    private void fill(int cellIndex, int passable, IntConsumer visitor) {
+        long time = Metrics.start();
+        FloodFillEvent event = FloodFillEvent.start();
+        FillScratch scratch = fillScratch != null ? fillScratch : new FillScratch(N);
+        fillScratch = null;
+        final int[] stamps = scratch.stamps;
+        final int[] stack = scratch.stack;
+        final int stamp = scratch.nextStamp();
+
+        int top = 0;
+        int explored = 0;
+        stack[top++] = cellIndex;
+        stamps[cellIndex] = stamp;
+        try {
+            while(top > 0) {
+                int current = stack[--top];
+                explored++;
+                visitor.accept(current);
+                int row = current / width;
+                int column = current - row * width;
+                int next;
+                if(row > 0 && stamps[next = current - width] != stamp && canCross(passable, horizontalEdgeIndex(row - 1, column))) {
+                    stamps[next] = stamp;
+                    stack[top++] = next;
+                }
+                if(column > 0 && stamps[next = current - 1] != stamp && canCross(passable, verticalEdgeIndex(row, column - 1))) {
+                    stamps[next] = stamp;
+                    stack[top++] = next;
+                }
+                if(column < width - 1 && stamps[next = current + 1] != stamp && canCross(passable, verticalEdgeIndex(row, column))) {
+                    stamps[next] = stamp;
+                    stack[top++] = next;
+                }
+                if(row < height - 1 && stamps[next = current + width] != stamp && canCross(passable, horizontalEdgeIndex(row, column))) {
+                    stamps[next] = stamp;
+                    stack[top++] = next;
+                }
+            }
+        } finally {
+            fillScratch = scratch;
+        }
+        event.finish(cellIndex, explored);
+        FLOOD_FILL_TIMER.stop(time);
+        FLOOD_FILL_CELLS.add(explored);
+    }
+
+    private boolean canCross(int passable, int edgeIndex) {
+        return (passable >>> (edges[edgeIndex] & 7) & 1) != 0;
+    }
+
+    /**
+     * @return set of crossable edge flags, bit f is set if edge flags f masked with mask equal value
+     */
+    private static int passableFlags(int mask, int value) {
+        int passable = 0;
+        for(int flags = 0; flags < 8; flags++) {
+            if((flags & mask) == value) passable |= 1 << flags;
+        }
+        return passable;
+    }
+
+    /**
+     * An Edge only carries its flags, so a condition on edges can be evaluated once for every combination of flags.
+     * @return set of crossable edge flags, bit f is set if an edge with flags f does not meet the stop condition
+     */
+    private static int passableFlags(Predicate<Edge> stopCondition) {
+        int passable = 0;
+        for(int flags = 0; flags < 8; flags++) {
+            if(!stopCondition.test(new Edge(flags))) passable |= 1 << flags;
+        }
+        return passable;
+    }
+
+    /**
+     * Returns the first cell from the graph.
+     * Which meets given condition.
      * @param pred condition to meet
      * @return first cell meeting the condition or null if there is none.
      */
     public Cell findAny(Predicate<Cell> pred) {
-        for(int i = 0; i < S; i++) {
-            for(int j = 0 ; j < S; j++) {
-                Cell c = cells.get(i).get(j);
-                if(pred.test(c)) return c;
-            }
+        for(int i = 0; i < N; i++) {
+            if(pred.test(cells[i])) return cells[i];
         }
         return null;
     }
 
     /**
      * Initializes all edges of the graph.
-     * Edges are stored in an adjacency matrix. 
-     * 2 Cells are connected by an edge if they share a side. 
-     * Only these edges are used by the program.
-     * TODO: Switch data structure to a sparse matrix.
+     * Only edges between neighbouring cells are stored, one byte of flags per edge.
      */
     protected void initEdges(){
-        edges = new ArrayList<>();
-        for (int i = 0; i < N; i++) {
-            ArrayList<Edge> row = new ArrayList<>();
-            for (int j = 0; j < N; j++) {
-                row.add(new Edge());
+        edges = new byte[height * (width - 1) + (height - 1) * width];
+    }
+
+    /**
+     * Initializes cells of graph.
+     */
+    protected void initCells() {
+        cells = new Cell[N];
+        for(int i = 0; i < height ; i++) {
+            for(int j = 0; j < width; j++) {
+                cells[getCellIndex(i, j)] = new Cell(i,j);
             }
-            edges.add(row);
         }
-        forEachEdge((edge) -> edge.setAreNeighbours(true));        
-    }   
+    }
 
     /**
-     * Initializes cells of graph.
+     * Graph restored by readObject, returned by readResolve.
+     */
+    private transient Graph restored;
+
+    /**
+     * Reads both the compact format and the old format of fixed size boards,
+     * where cells were stored in nested lists and edges in an adjacency matrix.
+     * Damaged data is rejected with an InvalidObjectException instead of
+     * producing a graph that fails later.
      */
-    protected void initCells() { 
-        cells = new ArrayList<>();
-        for(int i = 0; i < S ; i++) {
-            ArrayList<Cell> row = new ArrayList<>();
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        Object storedCells = fields.get("cells", null);
+        Object storedEdges = fields.get("edges", null);
+        if(storedCells instanceof Cell[] && storedEdges instanceof byte[]) {
+            int storedWidth = fields.get("width", 0);
+            int storedHeight = fields.get("height", 0);
+            Cell[] cellArray = (Cell[]) storedCells;
+            byte[] edgeArray = (byte[]) storedEdges;
+            if(storedWidth < 1 || storedHeight < 1)
+                throw new InvalidObjectException("Invalid graph size " + storedWidth + "x" + storedHeight);
+            if(cellArray.length != (long) storedWidth * storedHeight)
+                throw new InvalidObjectException("Expected " + (long) storedWidth * storedHeight + " cells, found " + cellArray.length);
+            long edgeCount = (long) storedHeight * (storedWidth - 1) + (long) (storedHeight - 1) * storedWidth;
+            if(edgeArray.length != edgeCount)
+                throw new InvalidObjectException("Expected " + edgeCount + " edges, found " + edgeArray.length);
+            checkCells(cellArray, storedWidth);
+            restored = new Graph(storedWidth, storedHeight, cellArray, edgeArray);
+            // Levels saved before verdicts were stored have none
+            Object storedVerdict = fields.get("verdict", null);
+            if(storedVerdict instanceof Verdict) restored.verdict = (Verdict) storedVerdict;
+            return;
+        }
+        if(!(storedCells instanceof ArrayList) || !(storedEdges instanceof ArrayList))
+            throw new IOException("Unknown graph format");
+
+        ArrayList<ArrayList<Cell>> cellMatrix = (ArrayList<ArrayList<Cell>>) storedCells;
+        ArrayList<ArrayList<Edge>> adjacencyMatrix = (ArrayList<ArrayList<Edge>>) storedEdges;
+        final int S = cellMatrix.size();
+        if(S < 1)
+            throw new InvalidObjectException("Empty graph");
+        if(adjacencyMatrix.size() != (long) S * S)
+            throw new InvalidObjectException("Expected " + S * S + " adjacency rows, found " + adjacencyMatrix.size());
+        for(int i = 0; i < S; i++) {
+            Object row = cellMatrix.get(i);
+            if(!(row instanceof ArrayList) || ((ArrayList<?>) row).size() != S)
+                throw new InvalidObjectException("Row " + i + " does not have " + S + " cells");
+        }
+        for(int i = 0; i < S * S; i++) {
+            Object row = adjacencyMatrix.get(i);
+            if(!(row instanceof ArrayList) || ((ArrayList<?>) row).size() != S * S)
+                throw new InvalidObjectException("Adjacency row " + i + " does not have " + S * S + " entries");
+        }
+        restored = new Graph(S, S, new Cell[S * S], null);
+        restored.initEdges();
+        for(int i = 0; i < S; i++) {
             for(int j = 0; j < S; j++) {
-                row.add(new Cell(i,j));
+                Object cell = ((ArrayList<?>) cellMatrix.get(i)).get(j);
+                if(!(cell instanceof Cell))
+                    throw new InvalidObjectException("Missing cell " + restored.getCellIndex(i, j));
+                restored.cells[restored.getCellIndex(i, j)] = (Cell) cell;
+            }
+        }
+        checkCells(restored.cells, S);
+        for(int i = 0; i < S; i++) {
+            for(int j = 0; j < S - 1; j++) {
+                int cellIndex = restored.getCellIndex(i, j);
+                restored.edges[restored.verticalEdgeIndex(i, j)] = storedEdge(adjacencyMatrix, cellIndex, cellIndex + 1);
+                cellIndex = restored.getCellIndex(j, i);
+                restored.edges[restored.horizontalEdgeIndex(j, i)] = storedEdge(adjacencyMatrix, cellIndex, cellIndex + S);
             }
-            cells.add(row);
         }
     }
+
+    /**
+     * Checks that every cell is present and knows its own position, since the
+     * cell index is computed from it.
+     */
+    private static void checkCells(Cell[] cells, int width) throws InvalidObjectException {
+        for(int i = 0; i < cells.length; i++) {
+            if(cells[i] == null || cells[i].state == null)
+                throw new InvalidObjectException("Missing cell " + i);
+            if(cells[i].row != i / width || cells[i].column != i % width)
+                throw new InvalidObjectException("Cell " + i + " is stored at row " + cells[i].row + ", column " + cells[i].column);
+        }
+    }
+
+    private static byte storedEdge(ArrayList<ArrayList<Edge>> adjacencyMatrix, int from, int to) throws InvalidObjectException {
+        Object edge = ((ArrayList<?>) adjacencyMatrix.get(from)).get(to);
+        if(!(edge instanceof Edge))
+            throw new InvalidObjectException("Missing edge between cells " + from + " and " + to);
+        return (byte) ((Edge) edge).toFlags();
+    }
+
+    private Object readResolve() {
+        return restored;
+    }
 }
@@ -0,0 +1,57 @@
+package logic.gameobjects;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints. Used for lists of cell indices without boxing.
+ */
+public class IntList {
+    private int[] values;
+    private int size = 0;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    public void add(int value) {
+        if(size == values.length) values = Arrays.copyOf(values, values.length * 2);
+        values[size++] = value;
+    }
+
+    public int get(int index) {
+        if(index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes the values from the index on. Keeps the allocated capacity.
+     * @param size new size, at most the current size
+     */
+    public void truncate(int size) {
+        if(size < 0 || size > this.size) throw new IndexOutOfBoundsException("Size " + size + " out of bounds for size " + this.size);
+        this.size = size;
+    }
+
+    /**
+     * Removes all values. Keeps the allocated capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
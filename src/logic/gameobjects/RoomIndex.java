@@ -0,0 +1,157 @@
+package logic.gameobjects;
+
+import java.util.Arrays;
+
+/**
+ * Index of the rooms of a graph. A room is an area of cells enclosed by walls.
+ * Maps cells to room ids, and room ids to their members, clue cell and number of black cells.
+ * Rooms are numbered from 0 in the order of their first cell. 
+ * The index is built by the Graph and rebuilt when walls change, see Graph.getRooms().
+ */
+public class RoomIndex {
+    private final Graph graph;
+
+    private int roomCount;
+    private final int[] roomOf;
+
+    /**
+     * Members of room r are members[memberStart[r]] ... members[memberStart[r + 1] - 1].
+     */
+    private int[] memberStart;
+    private final int[] members;
+
+    /**
+     * Index of the cell holding the expected number of black cells, or -1 if the room has no clue.
+     * Only one cell should have a clue per room, if there are more, the first in row major order is used.
+     */
+    private int[] clueCell;
+    private int[] blackCount;
+
+    RoomIndex(Graph graph) {
+        this.graph = graph;
+        roomOf = new int[graph.N];
+        members = new int[graph.N];
+        rebuild();
+    }
+
+    /**
+     * Recomputes all rooms from the walls, clues and cell states of the graph.
+     */
+    void rebuild() {
+        Arrays.fill(roomOf, -1);
+        int[] starts = new int[graph.N + 1];
+        IntList room = new IntList();
+        int position = 0;
+        roomCount = 0;
+        for(int i = 0; i < graph.N; i++) {
+            if(roomOf[i] != -1) continue;
+            graph.floodFill(i, room);
+            starts[roomCount] = position;
+            for(int j = 0; j < room.size(); j++) {
+                int cellIndex = room.get(j);
+                roomOf[cellIndex] = roomCount;
+                members[position++] = cellIndex;
+            }
+            roomCount++;
+        }
+        starts[roomCount] = position;
+        memberStart = Arrays.copyOf(starts, roomCount + 1);
+
+        clueCell = new int[roomCount];
+        blackCount = new int[roomCount];
+        Arrays.fill(clueCell, -1);
+        for(int i = 0; i < graph.N; i++) {
+            Cell cell = graph.getCell(i);
+            int r = roomOf[i];
+            if(cell.blackCount != -1 && clueCell[r] == -1) clueCell[r] = i;
+            if(cell.state == Cell.State.BLACK) blackCount[r]++;
+        }
+    }
+
+    /**
+     * Looks up the clue of a room again after the clue of one of its cells changed.
+     * @param room 
+     */
+    void updateClue(int room) {
+        clueCell[room] = -1;
+        for(int i = memberStart[room]; i < memberStart[room + 1]; i++) {
+            int cellIndex = members[i];
+            if(graph.getCell(cellIndex).blackCount != -1 && (clueCell[room] == -1 || cellIndex < clueCell[room])) 
+                clueCell[room] = cellIndex;
+        }
+    }
+
+    public int getRoomCount() {
+        return roomCount;
+    }
+
+    /**
+     * @param cellIndex
+     * @return id of the room containing the cell
+     */
+    public int roomOf(int cellIndex) {
+        return roomOf[cellIndex];
+    }
+
+    /**
+     * @param room
+     * @return number of cells in the room
+     */
+    public int size(int room) {
+        return memberStart[room + 1] - memberStart[room];
+    }
+
+    /**
+     * @param room
+     * @param i index of the member, 0 <= i < size(room)
+     * @return cell index of the i-th member of the room
+     */
+    public int member(int room, int i) {
+        return members[memberStart[room] + i];
+    }
+
+    /**
+     * @param room
+     * @return index of the cell holding the clue of the room, -1 if the room has no clue
+     */
+    public int clueCell(int room) {
+        return clueCell[room];
+    }
+
+    /**
+     * @param room
+     * @return expected number of black cells in the room, -1 if any number is allowed
+     */
+    public int clue(int room) {
+        return clueCell[room] == -1 ? -1 : graph.getCell(clueCell[room]).blackCount;
+    }
+
+    /**
+     * @param room
+     * @return number of cells painted black in the room
+     */
+    public int blackCount(int room) {
+        return blackCount[room];
+    }
+
+    /**
+     * @param room
+     * @return true if the room has no clue or its number of black cells equals the clue
+     */
+    public boolean isSatisfied(int room) {
+        int clue = clue(room);
+        return clue == -1 || clue == blackCount[room];
+    }
+
+    /**
+     * Updates the black count of the room of a cell after its state changed.
+     * @param cellIndex
+     * @param oldState state before the change
+     * @param newState state after the change
+     */
+    public void cellStateChanged(int cellIndex, Cell.State oldState, Cell.State newState) {
+        if(oldState == newState) return;
+        if(oldState == Cell.State.BLACK) blackCount[roomOf[cellIndex]]--;
+        if(newState == Cell.State.BLACK) blackCount[roomOf[cellIndex]]++;
+    }
+}
@@ -0,0 +1,56 @@
+package logic.gameobjects;
+
+/**
+ * Splits every row and column of a graph into segments at the walls.
+ * The segment of a cell is the number of walls between the cell and the start of its row or column,
+ * so a line of cells from a to b crosses segment(b) - segment(a) walls.
+ * Built by the Graph and rebuilt when walls change, see Graph.getRunSegments().
+ */
+public class RunSegments {
+    private final Graph graph;
+    private final int[] rowSegments;
+    private final int[] columnSegments;
+
+    RunSegments(Graph graph) {
+        this.graph = graph;
+        rowSegments = new int[graph.N];
+        columnSegments = new int[graph.N];
+        rebuild();
+    }
+
+    /**
+     * Recomputes the segments from the walls of the graph.
+     */
+    void rebuild() {
+        for(int i = 0; i < graph.height; i++) {
+            int segment = 0;
+            for(int j = 0; j < graph.width; j++) {
+                if(j > 0 && (graph.getEdgeFlags(graph.verticalEdgeIndex(i, j - 1)) & Graph.WALL) != 0) segment++;
+                rowSegments[graph.getCellIndex(i, j)] = segment;
+            }
+        }
+        for(int j = 0; j < graph.width; j++) {
+            int segment = 0;
+            for(int i = 0; i < graph.height; i++) {
+                if(i > 0 && (graph.getEdgeFlags(graph.horizontalEdgeIndex(i - 1, j)) & Graph.WALL) != 0) segment++;
+                columnSegments[graph.getCellIndex(i, j)] = segment;
+            }
+        }
+    }
+
+    /**
+     * @param cellIndex
+     * @return number of walls to the left of the cell in its row
+     */
+    public int rowSegment(int cellIndex) {
+        return rowSegments[cellIndex];
+    }
+
+    /**
+     * @param cellIndex
+     * @return number of walls above the cell in its column
+     */
+    public int columnSegment(int cellIndex) {
+        return columnSegments[cellIndex];
+    }
+}
@@ -0,0 +1,14 @@
+package logic.gameobjects;
+
+/**
+ * Number of solutions of a level, as found by the solver.
+ */
+public enum Verdict {
+    /**
+     * Not checked since the walls or clues were last edited.
+     */
+    UNKNOWN,
+    UNIQUE,
+    MULTIPLE,
+    UNSOLVABLE
+}
@@ -0,0 +1,241 @@
+package logic.gameobjects;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the connected components of white cells while cells change their state.
+ * 
+ * A cell turning white is joined to its white neighbours in a union-find forest.
+ * A cell losing its white color may cut its component in two, this is only possible if it had 2 or more white neighbours.
+ * Then searches are started from these neighbours in lockstep. Searches meeting each other are merged, 
+ * a search running out of cells before meeting the others has explored a new component, which gets a new node.
+ * The cost is proportional to the area explored, which is the smaller part of a cut component.
+ * 
+ * Nodes of cells which are no longer white stay in the forest, they only connect other nodes. 
+ * The forest is rebuilt when it runs out of nodes.
+ */
+public class WhiteConnectivity {
+    private final Graph graph;
+
+    /**
+     * Node of each white cell in the forest, -1 for other cells.
+     */
+    private final int[] nodeOf;
+    private int[] parent;
+    private int[] size;
+    private int nodeCount;
+
+    private int whiteCount;
+    private int componentCount;
+
+    // Buffers of the searches after a possible cut
+    private final int[] stamps;
+    private int stamp = 0;
+    private final int[] searchOf;
+    private final int[] queue;
+    private final int[] searchParent = new int[4];
+    private final int[] pending = new int[4];
+    private final int[] neighbours = new int[4];
+    private final int[] searchNeighbours = new int[4];
+
+    public WhiteConnectivity(Graph graph) {
+        this.graph = graph;
+        nodeOf = new int[graph.N];
+        parent = new int[2 * graph.N + 4];
+        size = new int[parent.length];
+        stamps = new int[graph.N];
+        searchOf = new int[graph.N];
+        queue = new int[graph.N];
+        rebuild();
+    }
+
+    /**
+     * Recomputes the components of white cells from scratch.
+     */
+    public void rebuild() {
+        Arrays.fill(nodeOf, -1);
+        nodeCount = 0;
+        whiteCount = 0;
+        componentCount = 0;
+        for(int i = 0; i < graph.N; i++) {
+            if(graph.getCell(i).white()) added(i);
+        }
+    }
+
+    /**
+     * @return true if there is at most one component of white cells
+     */
+    public boolean isConnected() {
+        return componentCount <= 1;
+    }
+
+    /**
+     * @return number of connected components of white cells
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * @return number of white cells
+     */
+    public int getWhiteCount() {
+        return whiteCount;
+    }
+
+    /**
+     * @param cell1 index of a white cell
+     * @param cell2 index of a white cell
+     * @return true if the two white cells are in the same component
+     */
+    public boolean connected(int cell1, int cell2) {
+        return nodeOf[cell1] != -1 && nodeOf[cell2] != -1 && find(nodeOf[cell1]) == find(nodeOf[cell2]);
+    }
+
+    /**
+     * Updates the components after a cell changed its state. The graph must already hold the new state.
+     * @param cellIndex
+     * @param oldState state before the change
+     * @param newState state after the change
+     */
+    public void cellStateChanged(int cellIndex, Cell.State oldState, Cell.State newState) {
+        if(oldState != Cell.State.WHITE && newState == Cell.State.WHITE) {
+            if(nodeCount == parent.length) rebuild();
+            else added(cellIndex);
+        } else if(oldState == Cell.State.WHITE && newState != Cell.State.WHITE) {
+            removed(cellIndex);
+        }
+    }
+
+    private void added(int cellIndex) {
+        int node = nodeCount++;
+        parent[node] = node;
+        size[node] = 1;
+        nodeOf[cellIndex] = node;
+        whiteCount++;
+        componentCount++;
+        int count = graph.neighbours(cellIndex, neighbours);
+        for(int i = 0; i < count; i++) {
+            int neighbourNode = nodeOf[neighbours[i]];
+            if(neighbourNode != -1 && union(node, neighbourNode)) componentCount--;
+        }
+    }
+
+    private void removed(int cellIndex) {
+        nodeOf[cellIndex] = -1;
+        whiteCount--;
+        int whiteNeighbours = 0;
+        int count = graph.neighbours(cellIndex, neighbours);
+        for(int i = 0; i < count; i++) {
+            if(nodeOf[neighbours[i]] != -1) neighbours[whiteNeighbours++] = neighbours[i];
+        }
+        if(whiteNeighbours == 0) componentCount--;
+        if(whiteNeighbours >= 2) searchCut(whiteNeighbours);
+    }
+
+    /**
+     * Searches from the first searchCount cells of neighbours in lockstep, until one search is left.
+     * Components split off are given new nodes.
+     * @param searchCount number of searches
+     */
+    private void searchCut(int searchCount) {
+        if(nodeCount + searchCount > parent.length) {
+            // Not enough nodes left for the components split off
+            rebuild();
+            return;
+        }
+        if(++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        int head = 0;
+        int tail = 0;
+        for(int s = 0; s < searchCount; s++) {
+            int start = neighbours[s];
+            searchParent[s] = s;
+            pending[s] = 1;
+            stamps[start] = stamp;
+            searchOf[start] = s;
+            queue[tail++] = start;
+        }
+        int activeSearches = searchCount;
+
+        while(activeSearches > 1 && head < tail) {
+            int current = queue[head++];
+            int search = findSearch(searchOf[current]);
+            pending[search]--;
+            int count = graph.neighbours(current, searchNeighbours);
+            for(int i = 0; i < count; i++) {
+                int next = searchNeighbours[i];
+                if(nodeOf[next] == -1) continue;
+                if(stamps[next] != stamp) {
+                    stamps[next] = stamp;
+                    searchOf[next] = search;
+                    pending[search]++;
+                    queue[tail++] = next;
+                } else {
+                    int other = findSearch(searchOf[next]);
+                    if(other != search) {
+                        searchParent[other] = search;
+                        pending[search] += pending[other];
+                        activeSearches--;
+                    }
+                }
+            }
+            if(pending[search] == 0 && activeSearches > 1) {
+                splitOff(search, tail);
+                activeSearches--;
+            }
+        }
+    }
+
+    /**
+     * Moves the cells explored by a finished search to a new component.
+     * @param search the finished search
+     * @param tail number of cells in the queue
+     */
+    private void splitOff(int search, int tail) {
+        int node = nodeCount++;
+        parent[node] = node;
+        size[node] = 0;
+        for(int i = 0; i < tail; i++) {
+            int cellIndex = queue[i];
+            if(findSearch(searchOf[cellIndex]) != search) continue;
+            nodeOf[cellIndex] = node;
+            size[node]++;
+        }
+        // Finished searches are never continued
+        searchParent[search] = -1 - search;
+        componentCount++;
+    }
+
+    private int findSearch(int search) {
+        while(searchParent[search] >= 0 && searchParent[search] != search) search = searchParent[search];
+        return search;
+    }
+
+    private int find(int node) {
+        while(parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    /**
+     * @return true if the two nodes were in different trees
+     */
+    private boolean union(int node1, int node2) {
+        int root1 = find(node1);
+        int root2 = find(node2);
+        if(root1 == root2) return false;
+        if(size[root1] < size[root2]) {
+            int tmp = root1;
+            root1 = root2;
+            root2 = tmp;
+        }
+        parent[root2] = root1;
+        size[root1] += size[root2];
+        return true;
+    }
+}
@@ -0,0 +1,36 @@
+package logic.generator;
+
+/**
+ * What kind of levels to generate.
+ */
+public class GeneratorSettings {
+    public final int width;
+    public final int height;
+    /**
+     * Rooms have between minRoomSize and maxRoomSize cells, unless the board can't be split that way.
+     */
+    public final int minRoomSize;
+    public final int maxRoomSize;
+    /**
+     * Share of rooms with a clue, from 0 to 1. More clues are added if needed for a unique solution,
+     * redundant clues are removed down to this share.
+     */
+    public final double clueDensity;
+
+    public GeneratorSettings(int width, int height, int minRoomSize, int maxRoomSize, double clueDensity) {
+        if(width < 2 || height < 2) throw new IllegalArgumentException("Invalid board size: " + width + "x" + height);
+        if(minRoomSize < 1 || maxRoomSize < minRoomSize)
+            throw new IllegalArgumentException("Invalid room size range: " + minRoomSize + "-" + maxRoomSize);
+        if(clueDensity < 0 || clueDensity > 1) throw new IllegalArgumentException("Invalid clue density: " + clueDensity);
+        this.width = width;
+        this.height = height;
+        this.minRoomSize = minRoomSize;
+        this.maxRoomSize = maxRoomSize;
+        this.clueDensity = clueDensity;
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height + ", rooms " + minRoomSize + "-" + maxRoomSize + ", clue density " + clueDensity;
+    }
+}
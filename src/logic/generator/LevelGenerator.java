@@ -0,0 +1,350 @@
+package logic.generator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import logic.gameobjects.Graph;
+import logic.gameobjects.RoomIndex;
+import logic.gameobjects.RunSegments;
+import logic.gameobjects.Verdict;
+import logic.solver.Puzzle;
+import logic.solver.Solution;
+import logic.solver.sat.SatBackend;
+
+/**
+ * Generates levels with a unique solution. Every candidate goes through these steps:
+ * 1. The board is split into rectangular rooms.
+ * 2. A random solution is found for the board without clues.
+ * 3. Rooms get the number of black cells of that solution as clue, with the share of clued rooms given by the settings.
+ * 4. While the level has more than one solution, a clue is added to a random room
+ *    whose number of black cells differs between the planted solution and another solution.
+ *    If there is none, a room is split so that its parts tell the solutions apart.
+ * 5. Clues are removed in random order while the level stays unique and has more clues than the settings ask for.
+ * A candidate fails if no room can be clued or split to tell the solutions apart.
+ *
+ * Solutions are counted by the SAT backend, which doesn't blow up on boards without clues.
+ * Cut clauses only depend on which cells are adjacent, so cut clauses found by one check are passed on to the next ones.
+ * A generator has no state, so one instance can be used by many threads.
+ */
+public class LevelGenerator {
+    /**
+     * Share of black cells tried first for the random solution.
+     */
+    private static final double BLACK_RATIO = 0.3;
+
+    private final GeneratorSettings settings;
+
+    public LevelGenerator(GeneratorSettings settings) {
+        this.settings = settings;
+    }
+
+    public GeneratorSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Generates candidates until one has a unique solution.
+     * @param random
+     * @return a level with walls, clues and verdict UNIQUE
+     */
+    public Graph generate(Random random) {
+        while(true) {
+            Graph graph = tryGenerate(random);
+            if(graph != null) return graph;
+        }
+    }
+
+    /**
+     * Generates one candidate.
+     * @param random
+     * @return a level with a unique solution, or null if the candidate failed
+     */
+    public Graph tryGenerate(Random random) {
+        Graph graph = new Graph(settings.width, settings.height);
+        buildRooms(graph, random);
+
+        boolean[] preferredBlack = new boolean[graph.N];
+        for(int i = 0; i < graph.N; i++) preferredBlack[i] = random.nextDouble() < BLACK_RATIO;
+        SatBackend planting = new SatBackend(graph);
+        Solution solution = planting.solve(preferredBlack);
+        if(solution == null) return null;
+        List<int[]> cutClauses = planting.getCutClauses();
+        boolean[] plantedBlack = new boolean[graph.N];
+        for(int i = 0; i < graph.N; i++) plantedBlack[i] = solution.isBlack(i);
+
+        RoomIndex rooms = graph.getRooms();
+        List<Integer> order = shuffledRooms(rooms.getRoomCount(), random);
+        int target = (int) Math.round(settings.clueDensity * rooms.getRoomCount());
+        for(int i = 0; i < target; i++) setClue(graph, rooms, order.get(i), solution);
+
+        // Trying the planted colors first finds other solutions close to it, which one clue or split can rule out
+        while(true) {
+            SatBackend backend = new SatBackend(new Puzzle(graph), cutClauses);
+            List<Solution> solutions = backend.findSolutions(2, plantedBlack);
+            cutClauses = backend.getCutClauses();
+            if(solutions.size() == 1) break;
+            Solution other = isSame(solutions.get(0), solution, graph.N) ? solutions.get(1) : solutions.get(0);
+            if(!clueDistinguishingRoom(graph, solution, other, random) && !splitDistinguishingRoom(graph, solution, other, random))
+                return null;
+        }
+
+        // Cut clauses don't depend on clues or walls, they stay valid while pruning
+        rooms = graph.getRooms();
+        List<Integer> clued = new ArrayList<>();
+        for(int r = 0; r < rooms.getRoomCount(); r++) {
+            if(rooms.clue(r) >= 0) clued.add(r);
+        }
+        target = (int) Math.round(settings.clueDensity * rooms.getRoomCount());
+        Collections.shuffle(clued, random);
+        int clueCount = clued.size();
+        for(int room : clued) {
+            if(clueCount <= target) break;
+            int cell = rooms.clueCell(room);
+            int clue = rooms.clue(room);
+            graph.setBlackCount(cell, -1);
+            SatBackend backend = new SatBackend(new Puzzle(graph), cutClauses);
+            boolean unique = backend.checkUniqueness() == Verdict.UNIQUE;
+            cutClauses = backend.getCutClauses();
+            if(unique) {
+                clueCount--;
+            } else {
+                graph.setBlackCount(cell, clue);
+            }
+        }
+        graph.setVerdict(Verdict.UNIQUE);
+        return graph;
+    }
+
+    private static List<Integer> shuffledRooms(int roomCount, Random random) {
+        List<Integer> rooms = new ArrayList<>(roomCount);
+        for(int r = 0; r < roomCount; r++) rooms.add(r);
+        Collections.shuffle(rooms, random);
+        return rooms;
+    }
+
+    /**
+     * Sets the number of black cells of the solution in a room as clue of the room, on its first cell.
+     */
+    private static void setClue(Graph graph, RoomIndex rooms, int room, Solution solution) {
+        graph.setBlackCount(rooms.member(room, 0), countBlack(rooms, room, solution));
+    }
+
+    private static int countBlack(RoomIndex rooms, int room, Solution solution) {
+        int count = 0;
+        for(int i = 0; i < rooms.size(room); i++) {
+            if(solution.isBlack(rooms.member(room, i))) count++;
+        }
+        return count;
+    }
+
+    private static boolean isSame(Solution a, Solution b, int n) {
+        for(int i = 0; i < n; i++) {
+            if(a.isBlack(i) != b.isBlack(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a clue to a random room without clue whose number of black cells differs between the solutions.
+     * @param solution the planted solution
+     * @param other another solution
+     * @return false if there is no such room
+     */
+    private static boolean clueDistinguishingRoom(Graph graph, Solution solution, Solution other, Random random) {
+        RoomIndex rooms = graph.getRooms();
+        List<Integer> candidates = new ArrayList<>();
+        for(int r = 0; r < rooms.getRoomCount(); r++) {
+            if(rooms.clue(r) < 0 && countBlack(rooms, r, solution) != countBlack(rooms, r, other)) candidates.add(r);
+        }
+        if(candidates.isEmpty()) return false;
+        setClue(graph, rooms, candidates.get(random.nextInt(candidates.size())), solution);
+        return true;
+    }
+
+    /**
+     * When the solutions only differ inside rooms with the same number of black cells, no clue can tell them apart.
+     * Then a room is split in two, so that the parts have different numbers of black cells
+     * or the new wall breaks a white line of the other solution.
+     * The split must keep the planted solution valid, i.e. no white line of the solution may cross 2 walls.
+     * Both parts get a clue. Rooms where the solutions differ are tried first,
+     * and splits keeping both parts at least minRoomSize before the others.
+     * @param solution the planted solution
+     * @param other another solution
+     * @return false if no room could be split
+     */
+    private boolean splitDistinguishingRoom(Graph graph, Solution solution, Solution other, Random random) {
+        RoomIndex rooms = graph.getRooms();
+        List<Integer> differing = new ArrayList<>();
+        List<Integer> same = new ArrayList<>();
+        for(int r = 0; r < rooms.getRoomCount(); r++) {
+            boolean differs = false;
+            for(int i = 0; i < rooms.size(r) && !differs; i++) {
+                int cell = rooms.member(r, i);
+                differs = solution.isBlack(cell) != other.isBlack(cell);
+            }
+            (differs ? differing : same).add(r);
+        }
+        Collections.shuffle(differing, random);
+        Collections.shuffle(same, random);
+        List<Integer> candidates = new ArrayList<>(differing);
+        candidates.addAll(same);
+        for(boolean keepMinSize : new boolean[] {true, false}) {
+            for(int room : candidates) {
+                if(trySplit(graph, graph.getRooms(), room, solution, other, keepMinSize)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tries all splits of a rectangular room along a row or column.
+     * @return true if the room was split
+     */
+    private boolean trySplit(Graph graph, RoomIndex rooms, int room, Solution solution, Solution other, boolean keepMinSize) {
+        int top = graph.height, left = graph.width, bottom = -1, right = -1;
+        for(int i = 0; i < rooms.size(room); i++) {
+            int cell = rooms.member(room, i);
+            top = Math.min(top, cell / graph.width);
+            bottom = Math.max(bottom, cell / graph.width);
+            left = Math.min(left, cell % graph.width);
+            right = Math.max(right, cell % graph.width);
+        }
+        int clueCell = rooms.clueCell(room);
+        int rows = bottom - top + 1;
+        int columns = right - left + 1;
+        for(int vertical = 0; vertical < 2; vertical++) {
+            int length = vertical == 1 ? columns : rows;
+            for(int s = 1; s < length; s++) {
+                int firstSize = s * (vertical == 1 ? rows : columns);
+                if(keepMinSize && (firstSize < settings.minRoomSize || rows * columns - firstSize < settings.minRoomSize)) continue;
+                // Cells on both sides of the split
+                int first = vertical == 1 ? graph.getCellIndex(top, left + s - 1) : graph.getCellIndex(top + s - 1, left);
+                int second = vertical == 1 ? first + 1 : first + graph.width;
+                int count = 0, otherCount = 0;
+                for(int i = top; i <= (vertical == 1 ? bottom : top + s - 1); i++) {
+                    for(int j = left; j <= (vertical == 1 ? left + s - 1 : right); j++) {
+                        if(solution.isBlack(i, j)) count++;
+                        if(other.isBlack(i, j)) otherCount++;
+                    }
+                }
+                setSplitWalls(graph, top, left, bottom, right, s, vertical == 1, Graph.WALL);
+                if(!satisfiesWhiteLines(graph, solution) || count == otherCount && satisfiesWhiteLines(graph, other)) {
+                    setSplitWalls(graph, top, left, bottom, right, s, vertical == 1, 0);
+                    continue;
+                }
+                if(clueCell != -1) graph.setBlackCount(clueCell, -1);
+                RoomIndex split = graph.getRooms();
+                setClue(graph, split, split.roomOf(first), solution);
+                setClue(graph, split, split.roomOf(second), solution);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the flags of the edges along a split of a rectangle, after s columns or rows.
+     */
+    private static void setSplitWalls(Graph graph, int top, int left, int bottom, int right, int s, boolean vertical, int flags) {
+        if(vertical) {
+            for(int i = top; i <= bottom; i++) {
+                int cell = graph.getCellIndex(i, left + s - 1);
+                graph.setEdgeFlags(graph.edgeIndex(cell, cell + 1), flags);
+            }
+        } else {
+            for(int j = left; j <= right; j++) {
+                int cell = graph.getCellIndex(top + s - 1, j);
+                graph.setEdgeFlags(graph.edgeIndex(cell, cell + graph.width), flags);
+            }
+        }
+    }
+
+    /**
+     * @return true if no white line of the solution crosses 2 walls of the graph
+     */
+    private static boolean satisfiesWhiteLines(Graph graph, Solution solution) {
+        RunSegments segments = graph.getRunSegments();
+        for(int i = 0; i < graph.height; i++) {
+            int start = -1;
+            for(int j = 0; j < graph.width; j++) {
+                int cell = graph.getCellIndex(i, j);
+                if(solution.isBlack(cell)) {
+                    start = -1;
+                    continue;
+                }
+                if(start == -1) start = cell;
+                if(segments.rowSegment(cell) - segments.rowSegment(start) >= 2) return false;
+            }
+        }
+        for(int j = 0; j < graph.width; j++) {
+            int start = -1;
+            for(int i = 0; i < graph.height; i++) {
+                int cell = graph.getCellIndex(i, j);
+                if(solution.isBlack(cell)) {
+                    start = -1;
+                    continue;
+                }
+                if(start == -1) start = cell;
+                if(segments.columnSegment(cell) - segments.columnSegment(start) >= 2) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits the board into rectangles and puts walls between them.
+     */
+    private void buildRooms(Graph graph, Random random) {
+        int[] roomOf = new int[graph.N];
+        int[] roomCount = {0};
+        split(graph, roomOf, roomCount, 0, 0, graph.width, graph.height, random);
+        for(int i = 0; i < graph.N; i++) {
+            int column = i % graph.width;
+            if(column < graph.width - 1 && roomOf[i] != roomOf[i + 1])
+                graph.setEdgeFlags(graph.edgeIndex(i, i + 1), Graph.WALL);
+            if(i + graph.width < graph.N && roomOf[i] != roomOf[i + graph.width])
+                graph.setEdgeFlags(graph.edgeIndex(i, i + graph.width), Graph.WALL);
+        }
+    }
+
+    /**
+     * Splits a rectangle in two until its area is at most maxRoomSize, without making rooms smaller than minRoomSize.
+     * Rectangles which could be split further are kept as a room at random.
+     */
+    private void split(Graph graph, int[] roomOf, int[] roomCount, int x, int y, int w, int h, Random random) {
+        int area = w * h;
+        boolean fits = area <= settings.maxRoomSize;
+        if(!fits || (area >= 2 * settings.minRoomSize && random.nextBoolean())) {
+            // Valid split positions keep both parts at least minRoomSize
+            int minColumns = Math.max(1, (settings.minRoomSize + h - 1) / h);
+            int minRows = Math.max(1, (settings.minRoomSize + w - 1) / w);
+            boolean vertical = w >= 2 * minColumns;
+            boolean horizontal = h >= 2 * minRows;
+            if(vertical && horizontal) {
+                // Prefer cutting the longer side, so rooms don't get too thin
+                if(w != h) vertical = w > h;
+                else vertical = random.nextBoolean();
+            }
+            if(vertical) {
+                int s = minColumns + random.nextInt(w - 2 * minColumns + 1);
+                split(graph, roomOf, roomCount, x, y, s, h, random);
+                split(graph, roomOf, roomCount, x + s, y, w - s, h, random);
+                return;
+            }
+            if(horizontal) {
+                int s = minRows + random.nextInt(h - 2 * minRows + 1);
+                split(graph, roomOf, roomCount, x, y, w, s, random);
+                split(graph, roomOf, roomCount, x, y + s, w, h - s, random);
+                return;
+            }
+        }
+        int room = roomCount[0]++;
+        for(int i = y; i < y + h; i++) {
+            for(int j = x; j < x + w; j++) {
+                roomOf[graph.getCellIndex(i, j)] = room;
+            }
+        }
+    }
+}
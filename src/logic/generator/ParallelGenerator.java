@@ -0,0 +1,102 @@
+package logic.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import logic.Core;
+import logic.gameobjects.Graph;
+
+/**
+ * Runs the LevelGenerator on a pool of worker threads.
+ * Every level is generated by one task with its own Random seeded from the seed of the run and the index of the level,
+ * so a run is reproducible however the tasks are scheduled. At most 2 tasks per thread are queued at once,
+ * finished levels are handed to the consumer on the calling thread in order of completion.
+ */
+public class ParallelGenerator {
+    private final LevelGenerator generator;
+    private final int threads;
+
+    /**
+     * @param settings
+     * @param threads number of worker threads
+     */
+    public ParallelGenerator(GeneratorSettings settings, int threads) {
+        if(threads < 1) throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        this.generator = new LevelGenerator(settings);
+        this.threads = threads;
+    }
+
+    /**
+     * Generates levels and collects them in a list.
+     * @param count number of levels
+     * @param seed
+     * @return the levels in order of completion
+     */
+    public List<Graph> generate(int count, long seed) throws InterruptedException {
+        List<Graph> levels = new ArrayList<>(count);
+        generate(count, seed, levels::add);
+        return levels;
+    }
+
+    /**
+     * Generates levels and passes each one to the consumer as soon as it's done.
+     * @param count number of levels
+     * @param seed
+     * @param consumer called on the calling thread
+     */
+    public void generate(int count, long seed, Consumer<Graph> consumer) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "level-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ExecutorCompletionService<Graph> completion = new ExecutorCompletionService<>(executor);
+        try {
+            int submitted = 0;
+            int maxInFlight = 2 * threads;
+            for(; submitted < Math.min(count, maxInFlight); submitted++) submit(completion, seed, submitted);
+            for(int done = 0; done < count; done++) {
+                Graph level = completion.take().get();
+                if(submitted < count) submit(completion, seed, submitted++);
+                consumer.accept(level);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Generating a level failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submit(ExecutorCompletionService<Graph> completion, long seed, int index) {
+        completion.submit(() -> generator.generate(new Random(seed * 31 + index)));
+    }
+
+    /**
+     * Generates levels and appends them to the level file.
+     * Usage: ParallelGenerator width height minRoomSize maxRoomSize clueDensity count [threads] [seed]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if(args.length < 6) {
+            System.err.println("Usage: ParallelGenerator width height minRoomSize maxRoomSize clueDensity count [threads] [seed]");
+            System.exit(1);
+        }
+        GeneratorSettings settings = new GeneratorSettings(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]), Integer.parseInt(args[3]), Double.parseDouble(args[4]));
+        int count = Integer.parseInt(args[5]);
+        int threads = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 7 ? Long.parseLong(args[7]) : System.nanoTime();
+
+        long start = System.nanoTime();
+        List<Graph> levels = new ParallelGenerator(settings, threads).generate(count, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Core.saveGraphs(levels);
+        System.out.printf("Generated %d levels (%s) in %.1fs on %d threads, %.0f levels per hour%n",
+                count, settings, seconds, threads, count / seconds * 3600);
+    }
+}
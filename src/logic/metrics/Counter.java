@@ -0,0 +1,34 @@
+package logic.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sum of counted things, e.g. cells explored by flood fills. Get one from Metrics.counter.
+ */
+public class Counter {
+    private final String name;
+    private final LongAdder sum = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Adds only while metrics are enabled.
+     */
+    public void add(long n) {
+        if(Metrics.isEnabled()) sum.add(n);
+    }
+
+    public long get() {
+        return sum.sum();
+    }
+
+    void reset() {
+        sum.reset();
+    }
+}
@@ -0,0 +1,45 @@
+package logic.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of one flood fill of a graph. Recorded with a stack trace, which tells which check or solver step filled.
+ */
+@Name("heyawake.FloodFill")
+@Label("Flood Fill")
+@Category("Heyawake")
+@Description("Time and size of one flood fill")
+@StackTrace(true)
+public class FloodFillEvent extends Event {
+    @Label("Start Cell")
+    int startCell;
+
+    @Label("Cells")
+    @Description("Number of explored cells")
+    int cells;
+
+    /**
+     * @return a new event which has begun
+     */
+    public static FloodFillEvent start() {
+        FloodFillEvent event = new FloodFillEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it if the recording wants it.
+     */
+    public void finish(int startCell, int cells) {
+        end();
+        if(!shouldCommit()) return;
+        this.startCell = startCell;
+        this.cells = cells;
+        commit();
+    }
+}
@@ -0,0 +1,89 @@
+package logic.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative long values with bounded relative error, in the style of HdrHistogram.
+ *
+ * Values below 16 have a bucket each. Above that every power of two is split into 16 linear buckets,
+ * so a value is known to within 1/16 of itself, and 960 buckets cover all longs.
+ * Recording is lock free and allocation free, and can happen on any thread.
+ * Reads during recording may see a value counted in count but not yet in its bucket, which only shifts percentiles slightly.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value negative values are recorded as 0
+     */
+    public void record(long value) {
+        if(value < 0) value = 0;
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long m;
+        while(value > (m = max.get()) && !max.compareAndSet(m, value)) {}
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double)total.get() / n;
+    }
+
+    /**
+     * @param percentile 0 to 100
+     * @return the highest value of the bucket containing the percentile, at most the maximum; 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long n = count.get();
+        if(n == 0) return 0;
+        long rank = Math.max(1, (long)Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if(seen >= rank) return Math.min(highestValue(i), max.get());
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    private static int bucket(long value) {
+        if(value < SUB_BUCKETS) return (int)value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * (shift + 1) + (int)(value >>> shift & (SUB_BUCKETS - 1));
+    }
+
+    private static long highestValue(int bucket) {
+        if(bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,173 @@
+package logic.metrics;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process registry of timers and counters, shared by all games and graphs.
+ *
+ * Disabled by default. Instrumented code asks for the start time with start, which is 0 while disabled,
+ * and timers and counters skip recording then, so the only cost is reading a volatile field.
+ * Values add up from the start of the process or the last reset; snapshots can be taken as text or JSON,
+ * or printed periodically by a reporter.
+ *
+ * Started from the command line with -Dheyawake.metrics=text|json, which prints a snapshot to System.err
+ * every -Dheyawake.metrics.period seconds (default 10) and when the program exits.
+ */
+public final class Metrics {
+    public static final String PROPERTY = "heyawake.metrics";
+    public static final String PERIOD_PROPERTY = "heyawake.metrics.period";
+    private static final long DEFAULT_PERIOD_SECONDS = 10;
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private static volatile boolean enabled = false;
+    private static final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private static final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+
+    private Metrics() {}
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * @return the current time in nanoseconds if metrics are enabled, 0 otherwise
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @return the timer with the name, created if there is none
+     */
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    /**
+     * @return the counter with the name, created if there is none
+     */
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * Clears all timers and counters. Recordings running at the same time may survive.
+     */
+    public static void reset() {
+        for(Timer timer : timers.values()) timer.getHistogram().reset();
+        for(Counter counter : counters.values()) counter.reset();
+    }
+
+    /**
+     * Enables metrics and starts a reporter if the system property asks for it.
+     * Does nothing otherwise.
+     */
+    public static void configure() {
+        String format = System.getProperty(PROPERTY);
+        if(format == null) return;
+        if(!format.equals("text") && !format.equals("json")) {
+            System.err.println("Unknown metrics format " + format + ", use text or json");
+            return;
+        }
+        long period = DEFAULT_PERIOD_SECONDS;
+        try {
+            period = Long.parseLong(System.getProperty(PERIOD_PROPERTY, String.valueOf(DEFAULT_PERIOD_SECONDS)));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid metrics period: " + System.getProperty(PERIOD_PROPERTY));
+        }
+        setEnabled(true);
+        startReporter(period, TimeUnit.SECONDS, System.err, format.equals("json"));
+    }
+
+    /**
+     * Prints a snapshot periodically on a daemon thread, and once more when the program exits.
+     * @param json true for one JSON object per line, false for text
+     * @return the executor of the reporter, shut it down to stop reporting
+     */
+    public static ScheduledExecutorService startReporter(long period, TimeUnit unit, PrintStream out, boolean json) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runnable report = () -> {
+            out.println(json ? toJson() : toText());
+            out.flush();
+        };
+        executor.scheduleAtFixedRate(report, period, period, unit);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if(!executor.isShutdown()) report.run();
+        }, "metrics-final-report"));
+        return executor;
+    }
+
+    /**
+     * @return one line per timer and counter, timers with count, mean, percentiles and maximum
+     */
+    public static String toText() {
+        StringBuilder sb = new StringBuilder("metrics at ").append(Instant.now()).append('\n');
+        for(Timer timer : timers.values()) {
+            Histogram h = timer.getHistogram();
+            if(h.getCount() == 0) continue;
+            sb.append("  ").append(timer.getName()).append(" count=").append(h.getCount())
+                    .append(" mean=").append(duration((long)h.getMean()));
+            for(int i = 0; i < PERCENTILES.length; i++) {
+                sb.append(' ').append(PERCENTILE_NAMES[i]).append('=').append(duration(h.getValueAtPercentile(PERCENTILES[i])));
+            }
+            sb.append(" max=").append(duration(h.getMax())).append('\n');
+        }
+        for(Counter counter : counters.values()) {
+            sb.append("  ").append(counter.getName()).append(' ').append(counter.get()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return a JSON object on one line, times in nanoseconds
+     */
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder("{\"time\":\"").append(Instant.now()).append("\",\"timers\":{");
+        boolean first = true;
+        for(Timer timer : timers.values()) {
+            Histogram h = timer.getHistogram();
+            if(h.getCount() == 0) continue;
+            if(!first) sb.append(',');
+            first = false;
+            sb.append('"').append(timer.getName()).append("\":{\"count\":").append(h.getCount())
+                    .append(",\"totalNanos\":").append(h.getTotal())
+                    .append(",\"meanNanos\":").append((long)h.getMean());
+            for(int i = 0; i < PERCENTILES.length; i++) {
+                sb.append(",\"").append(PERCENTILE_NAMES[i]).append("Nanos\":").append(h.getValueAtPercentile(PERCENTILES[i]));
+            }
+            sb.append(",\"maxNanos\":").append(h.getMax()).append('}');
+        }
+        sb.append("},\"counters\":{");
+        first = true;
+        for(Counter counter : counters.values()) {
+            if(!first) sb.append(',');
+            first = false;
+            sb.append('"').append(counter.getName()).append("\":").append(counter.get());
+        }
+        return sb.append("}}").toString();
+    }
+
+    private static String duration(long nanos) {
+        if(nanos < 1000) return nanos + "ns";
+        if(nanos < 1000_000) return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+        if(nanos < 1000_000_000) return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+        return String.format(Locale.ROOT, "%.2fs", nanos / 1e9);
+    }
+}
@@ -0,0 +1,51 @@
+package logic.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of one rule check after a click or a batch of moves, e.g.
+ * java -XX:StartFlightRecording:filename=game.jfr,settings=profile App, then jfr print --events heyawake.RuleCheck game.jfr
+ * Costs nothing measurable unless a recording with the event enabled is running.
+ */
+@Name("heyawake.RuleCheck")
+@Label("Rule Check")
+@Category("Heyawake")
+@Description("Time of checking one rule of the game")
+@StackTrace(false)
+public class RuleCheckEvent extends Event {
+    @Label("Rule")
+    String rule;
+
+    @Label("Cells")
+    @Description("Number of changed cells the rule was checked for")
+    int cells;
+
+    @Label("Incremental")
+    boolean incremental;
+
+    /**
+     * @return a new event which has begun
+     */
+    public static RuleCheckEvent start() {
+        RuleCheckEvent event = new RuleCheckEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it if the recording wants it.
+     */
+    public void finish(String rule, int cells, boolean incremental) {
+        end();
+        if(!shouldCommit()) return;
+        this.rule = rule;
+        this.cells = cells;
+        this.incremental = incremental;
+        commit();
+    }
+}
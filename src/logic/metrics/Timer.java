@@ -0,0 +1,36 @@
+package logic.metrics;
+
+/**
+ * Latency histogram of a measured piece of code, in nanoseconds. Get one from Metrics.timer.
+ *
+ * Usage: long time = Metrics.start(); ...; time = timer.stop(time);
+ * When metrics are disabled start returns 0 and stop does nothing, so measuring costs a volatile read.
+ */
+public class Timer {
+    private final String name;
+    private final Histogram histogram = new Histogram();
+
+    Timer(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Records the time since start.
+     * @param start result of Metrics.start or of a previous stop, 0 if metrics were disabled
+     * @return the current time, which can start the next measurement, or 0 if start was 0
+     */
+    public long stop(long start) {
+        if(start == 0) return 0;
+        long now = System.nanoTime();
+        histogram.record(now - start);
+        return now;
+    }
+}
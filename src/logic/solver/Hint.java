@@ -0,0 +1,42 @@
+package logic.solver;
+
+/**
+ * A cell whose color follows from the cells painted so far, and the rule which forces it. See HintEngine.
+ */
+public class Hint {
+    public enum Rule {
+        ADJACENT_BLACK("black cells can't be next to each other"),
+        ROOM_COUNT("the room needs exactly as many black cells as its number"),
+        WHITE_LINE("a line of white cells can't go through 3 rooms"),
+        CONNECTIVITY("all white cells must be connected"),
+        /**
+         * The other color breaks one of the rules after applying them for a while.
+         */
+        TRIAL("the other color leads to a broken rule");
+
+        public final String description;
+
+        Rule(String description) {
+            this.description = description;
+        }
+    }
+
+    public final int cellIndex;
+    public final int row;
+    public final int column;
+    public final boolean black;
+    public final Rule rule;
+
+    Hint(Puzzle puzzle, int cellIndex, boolean black, Rule rule) {
+        this.cellIndex = cellIndex;
+        this.row = cellIndex / puzzle.width;
+        this.column = cellIndex % puzzle.width;
+        this.black = black;
+        this.rule = rule;
+    }
+
+    @Override
+    public String toString() {
+        return "Row " + (row + 1) + ", column " + (column + 1) + " is " + (black ? "black" : "white") + ": " + rule.description;
+    }
+}
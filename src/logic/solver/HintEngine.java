@@ -0,0 +1,71 @@
+package logic.solver;
+
+import logic.gameobjects.Cell;
+import logic.gameobjects.Graph;
+
+/**
+ * Finds the next logical step of a game in progress: an unpainted cell whose color follows from the painted cells.
+ *
+ * The painted cells are given to the Propagator, and the first cell it deduces from them is the hint,
+ * with the rule which forced it. If the rules deduce nothing directly, each unpainted cell is tried with both colors,
+ * and a color which breaks a rule after propagation gives the other color as hint.
+ * Trying cells takes time on large boards, so it stops at a deadline or when the thread is interrupted.
+ *
+ * Holds reusable buffers, so an engine must only be used by one thread.
+ */
+public class HintEngine {
+    private final Puzzle puzzle;
+    private final Propagator propagator;
+    private final Hint.Rule[] rules;
+
+    public HintEngine(Puzzle puzzle) {
+        this.puzzle = puzzle;
+        this.propagator = new Propagator(puzzle);
+        this.rules = new Hint.Rule[puzzle.N];
+    }
+
+    /**
+     * Copies the painted cells of a graph, so the game can go on while a hint is searched.
+     * @return color of every cell, 1 for black, 0 for white, -1 for unpainted
+     */
+    public static byte[] colorsOf(Graph graph) {
+        byte[] colors = new byte[graph.N];
+        for(int i = 0; i < graph.N; i++) {
+            Cell.State state = graph.getCell(i).state;
+            colors[i] = (byte)(state == Cell.State.BLACK ? 1 : state == Cell.State.WHITE ? 0 : -1);
+        }
+        return colors;
+    }
+
+    /**
+     * @param colors painted cells, see colorsOf
+     * @param deadline value of System.nanoTime() at which the search gives up
+     * @return a hint, or null if the painted cells break a rule, nothing follows from them before the deadline,
+     * or the thread was interrupted
+     */
+    public Hint findHint(byte[] colors, long deadline) {
+        State state = new State(puzzle);
+        propagator.setRules(rules);
+        try {
+            if(!propagator.start(state, colors)) return null;
+        } finally {
+            propagator.setRules(null);
+        }
+        int given = 0;
+        for(byte color : colors) {
+            if(color >= 0) given++;
+        }
+        if(propagator.getAssignedCount() > given) {
+            int cellIndex = propagator.getAssigned(given);
+            return new Hint(puzzle, cellIndex, state.isBlack(cellIndex), rules[cellIndex]);
+        }
+
+        for(int i = 0; i < puzzle.N; i++) {
+            if(!state.isUnknown(i)) continue;
+            if(System.nanoTime() - deadline > 0 || Thread.currentThread().isInterrupted()) return null;
+            if(!propagator.decide(new State(state), i, true)) return new Hint(puzzle, i, false, Hint.Rule.TRIAL);
+            if(!propagator.decide(new State(state), i, false)) return new Hint(puzzle, i, true, Hint.Rule.TRIAL);
+        }
+        return null;
+    }
+}
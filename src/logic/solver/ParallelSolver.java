@@ -0,0 +1,234 @@
+package logic.solver;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import logic.gameobjects.Graph;
+import logic.gameobjects.Verdict;
+
+/**
+ * Solver searching both colors of a branching cell in parallel on a ForkJoinPool.
+ *
+ * The black branch is searched by the current task, the white branch is forked, so idle workers steal the biggest subtrees.
+ * Branches are only forked while the worker has few queued tasks, below that the search is sequential.
+ * Once enough solutions are found all tasks stop at their next node and forked siblings which didn't start are cancelled.
+ *
+ * Each worker thread has its own Propagator. Like the Solver, one instance must only run one search at a time.
+ */
+public class ParallelSolver extends Solver {
+    /**
+     * A branch is forked only if the worker has at most this many tasks queued which were not stolen.
+     */
+    private static final int SURPLUS_TASKS = 2;
+
+    private final int parallelism;
+    private final ThreadLocal<Propagator> propagators;
+
+    private Run lastRun;
+
+    /**
+     * Creates a solver using the common pool.
+     */
+    public ParallelSolver(Graph graph) {
+        this(new Puzzle(graph), 0);
+    }
+
+    /**
+     * @param puzzle
+     * @param parallelism number of worker threads, 0 to use the common pool
+     */
+    public ParallelSolver(Puzzle puzzle, int parallelism) {
+        super(puzzle);
+        if(parallelism < 0) throw new IllegalArgumentException("Parallelism must not be negative: " + parallelism);
+        this.parallelism = parallelism;
+        this.propagators = ThreadLocal.withInitial(() -> new Propagator(puzzle));
+    }
+
+    public int getParallelism() {
+        return parallelism == 0 ? ForkJoinPool.getCommonPoolParallelism() : parallelism;
+    }
+
+    @Override
+    public Solution solve() {
+        return start(1).firstSolution.get();
+    }
+
+    @Override
+    public int countSolutions(int limit) {
+        return Math.min(start(limit).solutionCount.get(), limit);
+    }
+
+    /**
+     * Like the Solver, gives up at the deadline or when the calling thread is interrupted.
+     * Workers check the deadline at every node. The calling thread waits interruptibly and stops the run when interrupted.
+     */
+    @Override
+    public Verdict checkUniqueness(long deadline) {
+        Run run = new Run(2, true, deadline);
+        start(run);
+        if(run.gaveUp) return Verdict.UNKNOWN;
+        switch(Math.min(run.solutionCount.get(), 2)) {
+            case 0: return Verdict.UNSOLVABLE;
+            case 1: return Verdict.UNIQUE;
+            default: return Verdict.MULTIPLE;
+        }
+    }
+
+    /**
+     * @return number of search nodes visited by the last run, over all threads
+     */
+    @Override
+    public long getNodeCount() {
+        return lastRun == null ? 0 : lastRun.nodeCount.sum();
+    }
+
+    private Run start(int limit) {
+        return start(new Run(limit, false, 0));
+    }
+
+    private Run start(Run run) {
+        lastRun = run;
+        State state = new State(puzzle);
+        if(!new Propagator(puzzle).start(state)) return run;
+        SearchTask root = new SearchTask(run, state);
+        ForkJoinPool pool = parallelism == 0 ? ForkJoinPool.commonPool() : new ForkJoinPool(parallelism);
+        try {
+            if(run.limited) await(pool.submit(root), run);
+            else pool.invoke(root);
+        } finally {
+            if(pool != ForkJoinPool.commonPool()) pool.shutdown();
+        }
+        return run;
+    }
+
+    /**
+     * Waits for the root task of a run with a deadline. ForkJoinPool.invoke ignores interrupts,
+     * so an interrupt of the waiting thread stops the run here. The interrupt status is kept.
+     */
+    private static void await(ForkJoinTask<Void> root, Run run) {
+        try {
+            root.get();
+        } catch (InterruptedException e) {
+            run.giveUp();
+            root.join();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Results of one run, shared by its tasks.
+     * Cancelled tasks may still be running when the run returns, so every run has its own.
+     */
+    private class Run {
+        final int solutionLimit;
+        final AtomicReference<Solution> firstSolution = new AtomicReference<>();
+        final AtomicInteger solutionCount = new AtomicInteger();
+        final LongAdder nodeCount = new LongAdder();
+        volatile boolean stopped;
+        /**
+         * Runs with a deadline give up at it, or when the waiting thread is interrupted.
+         */
+        final boolean limited;
+        final long deadline;
+        /**
+         * True if the run gave up, so its results are incomplete.
+         */
+        volatile boolean gaveUp;
+
+        /**
+         * @param limited true if the run gives up at the deadline
+         * @param deadline value of System.nanoTime() at which the run gives up
+         */
+        Run(int solutionLimit, boolean limited, long deadline) {
+            this.solutionLimit = solutionLimit;
+            this.limited = limited;
+            this.deadline = deadline;
+        }
+
+        void giveUp() {
+            gaveUp = true;
+            stopped = true;
+        }
+
+        /**
+         * @return true if the run is past its deadline, which stops it
+         */
+        boolean outOfTime() {
+            if(!limited || System.nanoTime() - deadline <= 0) return false;
+            giveUp();
+            return true;
+        }
+
+        /**
+         * Records a solution.
+         * @return true if the search should stop
+         */
+        boolean found(State state) {
+            int count = solutionCount.incrementAndGet();
+            if(count > solutionLimit) return true;
+            if(count == 1) firstSolution.compareAndSet(null, new Solution(puzzle, state));
+            if(count == solutionLimit) stopped = true;
+            return stopped;
+        }
+    }
+
+    /**
+     * Searches the subtree of a state whose deductions are already propagated.
+     */
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Run run;
+        private final State state;
+
+        SearchTask(Run run, State state) {
+            this.run = run;
+            this.state = state;
+        }
+
+        @Override
+        protected void compute() {
+            search(state);
+        }
+
+        /**
+         * @return true if the search should stop
+         */
+        private boolean search(State state) {
+            if(run.stopped || run.outOfTime()) return true;
+            run.nodeCount.increment();
+            if(state.unknownCount == 0) return run.found(state);
+
+            Propagator propagator = propagators.get();
+            int cellIndex = chooseCell(puzzle, state);
+            State black = new State(state);
+            boolean blackPossible = propagator.decide(black, cellIndex, true);
+            if(getSurplusQueuedTaskCount() > SURPLUS_TASKS) {
+                if(blackPossible && search(black)) return true;
+                return propagator.decide(state, cellIndex, false) && search(state);
+            }
+
+            SearchTask white = null;
+            if(propagator.decide(state, cellIndex, false)) {
+                white = new SearchTask(run, state);
+                white.fork();
+            }
+            boolean stop = blackPossible && search(black);
+            if(white == null) return stop;
+            if(stop || run.stopped) {
+                white.cancel(false);
+                return true;
+            }
+            white.join();
+            return run.stopped;
+        }
+    }
+}
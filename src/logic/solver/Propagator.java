@@ -0,0 +1,267 @@
+package logic.solver;
+
+import java.util.Arrays;
+
+/**
+ * Deduces cell colors from the rules of the game until nothing more follows or a rule is broken.
+ * The rules are the same as the ones checked by the Game:
+ * no adjacent black cells, rooms have exactly as many black cells as their clue,
+ * white lines don't cross 2 or more walls, and white cells are interconnected.
+ *
+ * Cells assigned a color are put in a queue. The local rules (neighbours, room, row and column) are applied to each of them.
+ * When the queue is empty, the connectivity of white cells is checked on the whole board, which may assign new cells.
+ *
+ * Holds reusable buffers, so a propagator must only be used by one thread.
+ */
+final class Propagator {
+    private final Puzzle puzzle;
+
+    private final int[] queue;
+    private int head = 0;
+    private int tail = 0;
+
+    // Buffers of the connectivity check
+    private final int[] discovered;
+    private final int[] low;
+    private final int[] parent;
+    private final int[] whitesBelow;
+    private final int[] stack;
+    private final int[] nextDirection;
+    private final int[] mustBeWhite;
+
+    private Hint.Rule[] rules;
+
+    Propagator(Puzzle puzzle) {
+        this.puzzle = puzzle;
+        queue = new int[puzzle.N];
+        discovered = new int[puzzle.N];
+        low = new int[puzzle.N];
+        parent = new int[puzzle.N];
+        whitesBelow = new int[puzzle.N];
+        stack = new int[puzzle.N];
+        nextDirection = new int[puzzle.N];
+        mustBeWhite = new int[puzzle.N];
+    }
+
+    /**
+     * Applies the rules to a state with no deductions made yet, e.g. rooms whose clue is 0 or the size of the room.
+     * @param state
+     * @return false if the state breaks a rule
+     */
+    boolean start(State state) {
+        head = tail = 0;
+        return checkRoomsAndPropagate(state);
+    }
+
+    /**
+     * Assigns given colors, e.g. the cells painted in a game, and applies the rules to them.
+     * The given cells come first in the assigned cells, followed by the deduced ones.
+     * @param state a state with all cells unknown
+     * @param colors color of every cell, 1 for black, 0 for white, -1 for unknown
+     * @return false if the colors break a rule
+     */
+    boolean start(State state, byte[] colors) {
+        head = tail = 0;
+        for(int i = 0; i < puzzle.N; i++) {
+            if(colors[i] >= 0 && !assign(state, i, colors[i] == 1, null)) return fail();
+        }
+        return checkRoomsAndPropagate(state);
+    }
+
+    private boolean checkRoomsAndPropagate(State state) {
+        for(int r = 0; r < puzzle.roomCount; r++) {
+            if(!checkRoom(state, r)) return fail();
+        }
+        return propagate(state);
+    }
+
+    /**
+     * Records the rule forcing each assigned cell, see Hint.
+     * @param rules array of puzzle.N rules filled while assigning, null to record nothing
+     */
+    void setRules(Hint.Rule[] rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * @return number of cells assigned by the last successful start or decide
+     */
+    int getAssignedCount() {
+        return tail;
+    }
+
+    /**
+     * @param i 0 <= i < getAssignedCount()
+     * @return the i-th cell assigned by the last successful start or decide
+     */
+    int getAssigned(int i) {
+        return queue[i];
+    }
+
+    /**
+     * Assigns a color to a cell and applies the rules.
+     * @param state
+     * @param cellIndex
+     * @param black
+     * @return false if the state breaks a rule
+     */
+    boolean decide(State state, int cellIndex, boolean black) {
+        head = tail = 0;
+        if(!assign(state, cellIndex, black, null)) return fail();
+        return propagate(state);
+    }
+
+    private boolean fail() {
+        head = tail = 0;
+        return false;
+    }
+
+    /**
+     * Sets the color of a cell and queues it.
+     * @param rule rule which forces the color, null for decisions and given colors
+     * @return false if the cell already has the other color
+     */
+    private boolean assign(State state, int cellIndex, boolean black, Hint.Rule rule) {
+        if(!state.isUnknown(cellIndex)) return state.isBlack(cellIndex) == black;
+        if(rules != null) rules[cellIndex] = rule;
+        long bit = 1L << cellIndex;
+        if(black) {
+            state.black[cellIndex >>> 6] |= bit;
+            state.roomBlack[puzzle.roomOf[cellIndex]]++;
+        } else {
+            state.white[cellIndex >>> 6] |= bit;
+        }
+        state.roomUnknown[puzzle.roomOf[cellIndex]]--;
+        state.unknownCount--;
+        queue[tail++] = cellIndex;
+        return true;
+    }
+
+    private boolean propagate(State state) {
+        while(true) {
+            while(head < tail) {
+                int cellIndex = queue[head++];
+                if(state.isBlack(cellIndex)) {
+                    for(int d = 0; d < 4; d++) {
+                        int neighbour = puzzle.neighbour(cellIndex, d);
+                        if(neighbour != -1 && !assign(state, neighbour, false, Hint.Rule.ADJACENT_BLACK)) return fail();
+                    }
+                } else {
+                    int row = cellIndex / puzzle.width;
+                    int column = cellIndex % puzzle.width;
+                    int rowStart = row * puzzle.width;
+                    if(!checkLine(state, cellIndex, rowStart, rowStart + puzzle.width - 1, 1, puzzle.rowSegment)) return fail();
+                    if(!checkLine(state, cellIndex, column, column + (puzzle.height - 1) * puzzle.width, puzzle.width, puzzle.columnSegment)) return fail();
+                }
+                if(!checkRoom(state, puzzle.roomOf[cellIndex])) return fail();
+            }
+            if(!checkConnectivity(state)) return fail();
+            if(head == tail) return true;
+        }
+    }
+
+    /**
+     * A room can't have more black cells than its clue, or fewer than its clue when all of its cells are black.
+     * If either bound is reached, the rest of the room is white or black.
+     */
+    private boolean checkRoom(State state, int room) {
+        int clue = puzzle.roomClue[room];
+        if(clue < 0) return true;
+        int black = state.roomBlack[room];
+        int unknown = state.roomUnknown[room];
+        if(black > clue || black + unknown < clue) return false;
+        if(unknown == 0 || (black != clue && black + unknown != clue)) return true;
+        boolean fillBlack = black != clue;
+        for(int i = puzzle.roomStart[room]; i < puzzle.roomStart[room + 1]; i++) {
+            int cellIndex = puzzle.roomMembers[i];
+            if(state.isUnknown(cellIndex) && !assign(state, cellIndex, fillBlack, Hint.Rule.ROOM_COUNT)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks the run of white cells through a white cell in a row or column.
+     * The run must not cross 2 walls. An unknown cell at the end of the run must be black,
+     * if painting it white would join runs crossing 2 walls.
+     * @param cellIndex a white cell
+     * @param first first cell of the line
+     * @param last last cell of the line
+     * @param stride distance of neighbouring cells of the line
+     * @param segment segments of the line
+     */
+    private boolean checkLine(State state, int cellIndex, int first, int last, int stride, int[] segment) {
+        int start = cellIndex;
+        while(start != first && state.isWhite(start - stride)) start -= stride;
+        int end = cellIndex;
+        while(end != last && state.isWhite(end + stride)) end += stride;
+        if(segment[end] - segment[start] >= 2) return false;
+
+        if(start != first && state.isUnknown(start - stride)) {
+            int extendedStart = start - stride;
+            while(extendedStart != first && state.isWhite(extendedStart - stride)) extendedStart -= stride;
+            if(segment[end] - segment[extendedStart] >= 2 && !assign(state, start - stride, true, Hint.Rule.WHITE_LINE)) return false;
+        }
+        if(end != last && state.isUnknown(end + stride)) {
+            int extendedEnd = end + stride;
+            while(extendedEnd != last && state.isWhite(extendedEnd + stride)) extendedEnd += stride;
+            if(segment[extendedEnd] - segment[start] >= 2 && !assign(state, end + stride, true, Hint.Rule.WHITE_LINE)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Searches the cells which are not black from a white cell, finding articulation points on the way.
+     * All white cells must be reached.
+     * Unknown cells which are not reached must be black,
+     * and unknown articulation points separating white cells must be white.
+     */
+    private boolean checkConnectivity(State state) {
+        int root = state.firstWhite();
+        if(root == -1) return true;
+        Arrays.fill(discovered, 0);
+
+        int time = 0;
+        int reachedWhites = 0;
+        int mustBeWhiteCount = 0;
+        int top = 0;
+        discovered[root] = low[root] = ++time;
+        parent[root] = -1;
+        whitesBelow[root] = 1;
+        nextDirection[root] = 0;
+        stack[top++] = root;
+        while(top > 0) {
+            int v = stack[top - 1];
+            if(nextDirection[v] < 4) {
+                int u = puzzle.neighbour(v, nextDirection[v]++);
+                if(u == -1 || state.isBlack(u)) continue;
+                if(discovered[u] == 0) {
+                    discovered[u] = low[u] = ++time;
+                    parent[u] = v;
+                    whitesBelow[u] = state.isWhite(u) ? 1 : 0;
+                    nextDirection[u] = 0;
+                    stack[top++] = u;
+                } else if(u != parent[v]) {
+                    low[v] = Math.min(low[v], discovered[u]);
+                }
+                continue;
+            }
+            top--;
+            if(state.isWhite(v)) reachedWhites++;
+            int p = parent[v];
+            if(p == -1) continue;
+            low[p] = Math.min(low[p], low[v]);
+            whitesBelow[p] += whitesBelow[v];
+            // Removing p would separate the white cells below v from the root, which is white
+            if(low[v] >= discovered[p] && whitesBelow[v] > 0 && state.isUnknown(p)) mustBeWhite[mustBeWhiteCount++] = p;
+        }
+        if(reachedWhites != state.whiteCount()) return false;
+
+        for(int i = 0; i < puzzle.N; i++) {
+            if(discovered[i] == 0 && state.isUnknown(i) && !assign(state, i, true, Hint.Rule.CONNECTIVITY)) return false;
+        }
+        for(int i = 0; i < mustBeWhiteCount; i++) {
+            if(!assign(state, mustBeWhite[i], false, Hint.Rule.CONNECTIVITY)) return false;
+        }
+        return true;
+    }
+}
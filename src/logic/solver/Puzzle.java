@@ -0,0 +1,119 @@
+package logic.solver;
+
+import logic.gameobjects.Graph;
+import logic.gameobjects.RoomIndex;
+import logic.gameobjects.RunSegments;
+
+/**
+ * The rules of a board compiled for the solver: rooms with their clues, and segments of rows and columns between walls.
+ * Cell states of the graph are ignored. Immutable, so it can be shared between threads.
+ */
+public class Puzzle {
+    public final int width;
+    public final int height;
+    public final int N;
+
+    final int roomCount;
+    final int[] roomOf;
+    /**
+     * Members of room r are roomMembers[roomStart[r]] ... roomMembers[roomStart[r + 1] - 1].
+     */
+    final int[] roomStart;
+    final int[] roomMembers;
+    /**
+     * Expected number of black cells of each room, -1 if any number is allowed.
+     */
+    final int[] roomClue;
+
+    final int[] rowSegment;
+    final int[] columnSegment;
+
+    public Puzzle(Graph graph) {
+        width = graph.width;
+        height = graph.height;
+        N = graph.N;
+
+        RoomIndex rooms = graph.getRooms();
+        roomCount = rooms.getRoomCount();
+        roomOf = new int[N];
+        roomStart = new int[roomCount + 1];
+        roomMembers = new int[N];
+        roomClue = new int[roomCount];
+        int position = 0;
+        for(int r = 0; r < roomCount; r++) {
+            roomStart[r] = position;
+            for(int i = 0; i < rooms.size(r); i++) {
+                int cellIndex = rooms.member(r, i);
+                roomOf[cellIndex] = r;
+                roomMembers[position++] = cellIndex;
+            }
+            roomClue[r] = rooms.clue(r);
+        }
+        roomStart[roomCount] = position;
+
+        RunSegments segments = graph.getRunSegments();
+        rowSegment = new int[N];
+        columnSegment = new int[N];
+        for(int i = 0; i < N; i++) {
+            rowSegment[i] = segments.rowSegment(i);
+            columnSegment[i] = segments.columnSegment(i);
+        }
+    }
+
+    public int getRoomCount() {
+        return roomCount;
+    }
+
+    public int roomOf(int cellIndex) {
+        return roomOf[cellIndex];
+    }
+
+    /**
+     * @param room
+     * @return expected number of black cells in the room, -1 if any number is allowed
+     */
+    public int clue(int room) {
+        return roomClue[room];
+    }
+
+    public int roomSize(int room) {
+        return roomStart[room + 1] - roomStart[room];
+    }
+
+    /**
+     * @param room
+     * @param i index of the member, from 0 to roomSize(room) - 1
+     * @return cell index of the member
+     */
+    public int roomMember(int room, int i) {
+        return roomMembers[roomStart[room] + i];
+    }
+
+    /**
+     * @return number of walls between the cell and the start of its row
+     */
+    public int rowSegment(int cellIndex) {
+        return rowSegment[cellIndex];
+    }
+
+    /**
+     * @return number of walls between the cell and the start of its column
+     */
+    public int columnSegment(int cellIndex) {
+        return columnSegment[cellIndex];
+    }
+
+    /**
+     * @param cellIndex
+     * @param direction 0: top, 1: left, 2: right, 3: bottom
+     * @return index of the neighbour in the given direction, -1 if the cell is on the border
+     */
+    public int neighbour(int cellIndex, int direction) {
+        switch(direction) {
+            case 0: return cellIndex >= width ? cellIndex - width : -1;
+            case 1: return cellIndex % width != 0 ? cellIndex - 1 : -1;
+            case 2: return cellIndex % width != width - 1 ? cellIndex + 1 : -1;
+            default: return cellIndex + width < N ? cellIndex + width : -1;
+        }
+    }
+}
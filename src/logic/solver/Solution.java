@@ -0,0 +1,49 @@
+package logic.solver;
+
+/**
+ * A complete solution of a puzzle: the set of black cells. All other cells are white.
+ */
+public class Solution {
+    public final int width;
+    public final int height;
+    private final long[] black;
+
+    Solution(Puzzle puzzle, State state) {
+        width = puzzle.width;
+        height = puzzle.height;
+        black = state.black.clone();
+    }
+
+    /**
+     * @param puzzle
+     * @param black color of every cell, true for black
+     */
+    public Solution(Puzzle puzzle, boolean[] black) {
+        width = puzzle.width;
+        height = puzzle.height;
+        this.black = new long[(puzzle.N + 63) >>> 6];
+        for(int i = 0; i < puzzle.N; i++) {
+            if(black[i]) this.black[i >>> 6] |= 1L << i;
+        }
+    }
+
+    public boolean isBlack(int cellIndex) {
+        return (black[cellIndex >>> 6] & (1L << cellIndex)) != 0;
+    }
+
+    public boolean isBlack(int row, int column) {
+        return isBlack(row * width + column);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < height; i++) {
+            for(int j = 0; j < width; j++) {
+                sb.append(isBlack(i, j) ? '#' : '.');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,134 @@
+package logic.solver;
+
+import logic.gameobjects.Graph;
+import logic.gameobjects.Verdict;
+
+/**
+ * Solves puzzles: finds which cells to paint black, so that all rules of the game are met.
+ * Only the walls and the clues of the graph are used.
+ *
+ * Deductions are made by the Propagator. When it gets stuck, the search picks an unknown cell and tries both colors.
+ * Cells of the clued room with the fewest unknown cells are picked first, as these rooms are the closest to being decided.
+ *
+ * A solver must only be used by one thread.
+ */
+public class Solver implements SolverBackend {
+    protected final Puzzle puzzle;
+    private final Propagator propagator;
+
+    private Solution firstSolution;
+    private int solutionCount;
+    private int solutionLimit;
+    private long nodeCount;
+
+    /**
+     * Searches with a deadline stop at it or when the thread is interrupted, see checkUniqueness(long).
+     */
+    private boolean limited = false;
+    private long deadline;
+    private boolean stopped;
+
+    public Solver(Graph graph) {
+        this(new Puzzle(graph));
+    }
+
+    public Solver(Puzzle puzzle) {
+        this.puzzle = puzzle;
+        this.propagator = new Propagator(puzzle);
+    }
+
+    public Puzzle getPuzzle() {
+        return puzzle;
+    }
+
+    @Override
+    public Solution solve() {
+        run(1);
+        return firstSolution;
+    }
+
+    @Override
+    public int countSolutions(int limit) {
+        run(limit);
+        return solutionCount;
+    }
+
+    /**
+     * Checks whether the puzzle has exactly one solution, giving up at the deadline or when the thread is interrupted.
+     * @param deadline value of System.nanoTime() at which the search gives up
+     * @return UNIQUE, MULTIPLE or UNSOLVABLE, or UNKNOWN if the search gave up
+     */
+    public Verdict checkUniqueness(long deadline) {
+        this.deadline = deadline;
+        limited = true;
+        try {
+            Verdict verdict = checkUniqueness();
+            return stopped ? Verdict.UNKNOWN : verdict;
+        } finally {
+            limited = false;
+        }
+    }
+
+    /**
+     * @return number of search nodes visited by the last run
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    private void run(int limit) {
+        firstSolution = null;
+        solutionCount = 0;
+        solutionLimit = limit;
+        nodeCount = 0;
+        stopped = false;
+        State state = new State(puzzle);
+        if(propagator.start(state)) search(state);
+    }
+
+    /**
+     * @return true if the search should stop
+     */
+    private boolean search(State state) {
+        nodeCount++;
+        if(limited && (System.nanoTime() - deadline > 0 || Thread.currentThread().isInterrupted())) {
+            stopped = true;
+            return true;
+        }
+        if(state.unknownCount == 0) {
+            if(solutionCount++ == 0) firstSolution = new Solution(puzzle, state);
+            return solutionCount >= solutionLimit;
+        }
+        int cellIndex = chooseCell(puzzle, state);
+        State black = new State(state);
+        if(propagator.decide(black, cellIndex, true) && search(black)) return true;
+        return propagator.decide(state, cellIndex, false) && search(state);
+    }
+
+    /**
+     * Picks the next cell to branch on: an unknown cell of the clued room which still needs black cells
+     * and has the fewest unknown cells. If there is no such room, the first unknown cell next to a white cell.
+     * @return index of an unknown cell
+     */
+    static int chooseCell(Puzzle puzzle, State state) {
+        int bestRoom = -1;
+        for(int r = 0; r < puzzle.roomCount; r++) {
+            int unknown = state.roomUnknown[r];
+            if(puzzle.roomClue[r] <= state.roomBlack[r] || unknown == 0) continue;
+            if(bestRoom == -1 || unknown < state.roomUnknown[bestRoom]) bestRoom = r;
+        }
+        if(bestRoom != -1) {
+            for(int i = puzzle.roomStart[bestRoom]; i < puzzle.roomStart[bestRoom + 1]; i++) {
+                if(state.isUnknown(puzzle.roomMembers[i])) return puzzle.roomMembers[i];
+            }
+        }
+        for(int i = 0; i < puzzle.N; i++) {
+            if(!state.isUnknown(i)) continue;
+            for(int d = 0; d < 4; d++) {
+                int neighbour = puzzle.neighbour(i, d);
+                if(neighbour != -1 && state.isWhite(neighbour)) return i;
+            }
+        }
+        return state.firstUnknown(puzzle.N);
+    }
+}
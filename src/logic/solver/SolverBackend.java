@@ -0,0 +1,33 @@
+package logic.solver;
+
+import logic.gameobjects.Verdict;
+
+/**
+ * Something that solves one puzzle, e.g. the backtracking Solver or the SAT backend.
+ * Backends are bound to the puzzle they were created for and must only run one search at a time.
+ */
+public interface SolverBackend {
+    /**
+     * @return a solution, or null if the puzzle has none
+     */
+    Solution solve();
+
+    /**
+     * Counts solutions, stops after limit solutions are found.
+     * @param limit maximum number of solutions to look for
+     * @return number of solutions, at most limit
+     */
+    int countSolutions(int limit);
+
+    /**
+     * Checks whether the puzzle has exactly one solution. The search stops at the second solution.
+     * @return UNIQUE, MULTIPLE or UNSOLVABLE
+     */
+    default Verdict checkUniqueness() {
+        switch(countSolutions(2)) {
+            case 0: return Verdict.UNSOLVABLE;
+            case 1: return Verdict.UNIQUE;
+            default: return Verdict.MULTIPLE;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package logic.solver;
+
+import java.util.List;
+
+import logic.Core;
+import logic.gameobjects.Graph;
+
+/**
+ * Prints the speedup of the ParallelSolver against the sequential Solver on the levels of the library.
+ * Counting solutions searches the whole tree, so each level is timed counting up to a limit of solutions.
+ *
+ * Usage: SpeedupReport [solution limit] [repetitions]
+ */
+public class SpeedupReport {
+    private static final int[] PARALLELISM = {1, 2, 4, 8};
+
+    public static void main(String[] args) {
+        int limit = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        List<Graph> graphs = Core.loadGraphs();
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-6s %-8s %-10s %-12s", "level", "size", "solutions", "sequential");
+        for(int p : PARALLELISM) System.out.printf(" %-16s", p + " threads");
+        System.out.println();
+
+        for(int i = 0; i < graphs.size(); i++) {
+            Graph graph = graphs.get(i);
+            Puzzle puzzle = new Puzzle(graph);
+            Solver solver = new Solver(puzzle);
+            int solutions = solver.countSolutions(limit);
+            long sequential = time(solver, limit, repetitions);
+            System.out.printf("%-6d %-8s %-10d %-12s", i, graph.width + "x" + graph.height, solutions, millis(sequential));
+            for(int p : PARALLELISM) {
+                long parallel = time(new ParallelSolver(puzzle, p), limit, repetitions);
+                System.out.printf(" %-16s", String.format("%s (%.2fx)", millis(parallel), (double)sequential / parallel));
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * @return best time of the repetitions in nanoseconds
+     */
+    private static long time(Solver solver, int limit, int repetitions) {
+        long best = Long.MAX_VALUE;
+        for(int r = 0; r < repetitions; r++) {
+            long start = System.nanoTime();
+            solver.countSolutions(limit);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return Math.max(best, 1);
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1fms", nanos / 1e6);
+    }
+}
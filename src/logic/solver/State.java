@@ -0,0 +1,78 @@
+package logic.solver;
+
+/**
+ * A partial solution. Every cell is black, white or unknown, stored in two bitboards.
+ * Counts of black and unknown cells are kept per room.
+ */
+final class State {
+    final long[] black;
+    final long[] white;
+    final int[] roomBlack;
+    final int[] roomUnknown;
+    int unknownCount;
+
+    /**
+     * Creates a state with all cells unknown.
+     */
+    State(Puzzle puzzle) {
+        black = new long[(puzzle.N + 63) >>> 6];
+        white = new long[black.length];
+        roomBlack = new int[puzzle.roomCount];
+        roomUnknown = new int[puzzle.roomCount];
+        for(int r = 0; r < puzzle.roomCount; r++) {
+            roomUnknown[r] = puzzle.roomStart[r + 1] - puzzle.roomStart[r];
+        }
+        unknownCount = puzzle.N;
+    }
+
+    State(State other) {
+        black = other.black.clone();
+        white = other.white.clone();
+        roomBlack = other.roomBlack.clone();
+        roomUnknown = other.roomUnknown.clone();
+        unknownCount = other.unknownCount;
+    }
+
+    boolean isBlack(int cellIndex) {
+        return (black[cellIndex >>> 6] & (1L << cellIndex)) != 0;
+    }
+
+    boolean isWhite(int cellIndex) {
+        return (white[cellIndex >>> 6] & (1L << cellIndex)) != 0;
+    }
+
+    boolean isUnknown(int cellIndex) {
+        return ((black[cellIndex >>> 6] | white[cellIndex >>> 6]) & (1L << cellIndex)) == 0;
+    }
+
+    int whiteCount() {
+        int count = 0;
+        for(long word : white) count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * @param n number of cells
+     * @return index of the first unknown cell, -1 if there is none
+     */
+    int firstUnknown(int n) {
+        for(int i = 0; i < black.length; i++) {
+            long unknown = ~(black[i] | white[i]);
+            if(unknown != 0) {
+                int cellIndex = (i << 6) + Long.numberOfTrailingZeros(unknown);
+                return cellIndex < n ? cellIndex : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return index of the first white cell, -1 if there is none
+     */
+    int firstWhite() {
+        for(int i = 0; i < white.length; i++) {
+            if(white[i] != 0) return (i << 6) + Long.numberOfTrailingZeros(white[i]);
+        }
+        return -1;
+    }
+}
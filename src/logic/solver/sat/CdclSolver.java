@@ -0,0 +1,620 @@
+package logic.solver.sat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Conflict driven clause learning SAT solver.
+ *
+ * Clauses are watched by two literals, so only clauses whose watched literal became false are visited during propagation.
+ * Conflicts are analyzed to the first unique implication point and the learnt clause is added to the database.
+ * Decisions pick the unassigned variable with the highest activity (VSIDS) with its last assigned polarity.
+ * The search restarts after a number of conflicts following the Luby sequence, and learnt clauses with low activity are deleted.
+ *
+ * Variables are numbered from 0. A literal is 2 * variable for the positive and 2 * variable + 1 for the negative literal.
+ * Clauses can be added between calls to solve, so the solver can be used incrementally.
+ * Constraints which are too big to encode up front can add clauses during the search, see LazyConstraint.
+ */
+public class CdclSolver {
+    /**
+     * A constraint checked whenever propagation is done, which adds clauses on demand.
+     */
+    public interface LazyConstraint {
+        /**
+         * Checks the current partial assignment, see isTrue and isFalse.
+         * @param solver
+         * @return a clause which is violated or unit under the current assignment, null if there is none
+         */
+        int[] check(CdclSolver solver);
+    }
+
+    private static final byte UNDEFINED = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = -1;
+
+    private static final int RESTART_BASE = 100;
+    private static final double VARIABLE_DECAY = 0.95;
+    private static final double CLAUSE_DECAY = 0.999;
+
+    public static int literal(int variable, boolean positive) {
+        return positive ? 2 * variable : 2 * variable + 1;
+    }
+
+    public static int variable(int literal) {
+        return literal >> 1;
+    }
+
+    public static boolean isPositive(int literal) {
+        return (literal & 1) == 0;
+    }
+
+    private static final class Clause {
+        final int[] literals;
+        final boolean learnt;
+        double activity;
+        boolean deleted;
+
+        Clause(int[] literals, boolean learnt) {
+            this.literals = literals;
+            this.learnt = learnt;
+        }
+    }
+
+    private int variableCount = 0;
+    /**
+     * Value of every variable, one of UNDEFINED, TRUE and FALSE.
+     */
+    private byte[] values = new byte[0];
+    private int[] levels = new int[0];
+    private Clause[] reasons = new Clause[0];
+    private boolean[] phases = new boolean[0];
+    private double[] activities = new double[0];
+    private boolean[] seen = new boolean[0];
+
+    /**
+     * Clauses watching each literal, the watched literals are the first two of a clause.
+     */
+    private Clause[][] watches = new Clause[0][];
+    private int[] watchCounts = new int[0];
+
+    private final List<Clause> clauses = new ArrayList<>();
+    private final List<Clause> learnts = new ArrayList<>();
+
+    /**
+     * Assigned literals in order of assignment. Literals of decision level d start at trailLimits[d - 1].
+     */
+    private int[] trail = new int[0];
+    private int trailSize = 0;
+    private int[] trailLimits = new int[0];
+    private int decisionLevel = 0;
+    private int propagationHead = 0;
+
+    private final VariableHeap heap = new VariableHeap();
+    private double variableIncrement = 1;
+    private double clauseIncrement = 1;
+    private double maxLearnts;
+
+    private LazyConstraint lazyConstraint;
+
+    private boolean satisfiable = true;
+    private boolean[] model;
+    private long conflicts = 0;
+    private long decisions = 0;
+
+    /**
+     * Adds a variable.
+     * @return index of the new variable
+     */
+    public int newVariable() {
+        int variable = variableCount++;
+        if(variableCount > values.length) {
+            int capacity = Math.max(16, values.length * 2);
+            values = Arrays.copyOf(values, capacity);
+            levels = Arrays.copyOf(levels, capacity);
+            reasons = Arrays.copyOf(reasons, capacity);
+            phases = Arrays.copyOf(phases, capacity);
+            activities = Arrays.copyOf(activities, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+            trail = Arrays.copyOf(trail, capacity);
+            trailLimits = Arrays.copyOf(trailLimits, capacity);
+            watches = Arrays.copyOf(watches, 2 * capacity);
+            watchCounts = Arrays.copyOf(watchCounts, 2 * capacity);
+            heap.grow(capacity);
+        }
+        watches[2 * variable] = new Clause[4];
+        watches[2 * variable + 1] = new Clause[4];
+        heap.insert(variable);
+        return variable;
+    }
+
+    /**
+     * Makes sure variables 0 ... count - 1 exist.
+     */
+    public void ensureVariables(int count) {
+        while(variableCount < count) newVariable();
+    }
+
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    public void setLazyConstraint(LazyConstraint lazyConstraint) {
+        this.lazyConstraint = lazyConstraint;
+    }
+
+    public boolean isTrue(int literal) {
+        return value(literal) == TRUE;
+    }
+
+    public boolean isFalse(int literal) {
+        return value(literal) == FALSE;
+    }
+
+    /**
+     * Sets the value tried first when deciding on a variable. Later decisions use the last value the variable had.
+     */
+    public void setPolarity(int variable, boolean value) {
+        phases[variable] = value;
+    }
+
+    public long getConflictCount() {
+        return conflicts;
+    }
+
+    public long getDecisionCount() {
+        return decisions;
+    }
+
+    /**
+     * Adds a clause. Variables of the literals must exist.
+     * @param literals literals of the clause, may be reordered
+     * @return false if the clauses are unsatisfiable at the top level
+     */
+    public boolean addClause(int... literals) {
+        if(!satisfiable) return false;
+        cancelUntil(0);
+        int[] sorted = literals.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for(int i = 0; i < sorted.length; i++) {
+            int literal = sorted[i];
+            if(variable(literal) >= variableCount) throw new IllegalArgumentException("Unknown variable " + variable(literal));
+            byte value = value(literal);
+            // Satisfied clauses and tautologies are not needed
+            if(value == TRUE || (size > 0 && sorted[size - 1] == (literal ^ 1))) return true;
+            if(value == FALSE || (size > 0 && sorted[size - 1] == literal)) continue;
+            sorted[size++] = literal;
+        }
+        if(size == 0) return satisfiable = false;
+        if(size == 1) {
+            assign(sorted[0], null);
+            return satisfiable = propagate() == null;
+        }
+        Clause clause = new Clause(Arrays.copyOf(sorted, size), false);
+        clauses.add(clause);
+        attach(clause);
+        return true;
+    }
+
+    /**
+     * Searches an assignment satisfying all clauses added so far.
+     * @return true if there is one, see getModel
+     */
+    public boolean solve() {
+        model = null;
+        if(!satisfiable) return false;
+        cancelUntil(0);
+        if(propagate() != null) return satisfiable = false;
+        maxLearnts = Math.max(clauses.size() / 3.0, 1000);
+        for(int restart = 0; ; restart++) {
+            byte result = search(luby(restart) * RESTART_BASE);
+            if(result != UNDEFINED) {
+                cancelUntil(0);
+                return result == TRUE;
+            }
+        }
+    }
+
+    /**
+     * @return values of the variables found by the last successful call of solve, null if there is none
+     */
+    public boolean[] getModel() {
+        return model;
+    }
+
+    /**
+     * Searches until a model is found, the clauses are proven unsatisfiable or the conflict budget is used up.
+     * @return TRUE, FALSE or UNDEFINED if the search should restart
+     */
+    private byte search(long conflictBudget) {
+        long conflictCount = 0;
+        while(true) {
+            Clause conflict = propagate();
+            if(conflict == null && lazyConstraint != null) {
+                int[] clause = lazyConstraint.check(this);
+                if(clause != null) {
+                    conflict = addLazyClause(clause);
+                    if(!satisfiable) return FALSE;
+                    if(conflict == null) continue;
+                }
+            }
+            if(conflict != null) {
+                conflicts++;
+                conflictCount++;
+                if(decisionLevel == 0) {
+                    satisfiable = false;
+                    return FALSE;
+                }
+                learn(conflict);
+                variableIncrement /= VARIABLE_DECAY;
+                clauseIncrement /= CLAUSE_DECAY;
+                continue;
+            }
+            if(conflictCount >= conflictBudget) {
+                cancelUntil(0);
+                return UNDEFINED;
+            }
+            if(learnts.size() - trailSize >= maxLearnts) {
+                reduceLearnts();
+                maxLearnts *= 1.1;
+            }
+            int decision = pickBranchLiteral();
+            if(decision == -1) {
+                model = new boolean[variableCount];
+                for(int v = 0; v < variableCount; v++) model[v] = values[v] == TRUE;
+                return TRUE;
+            }
+            decisions++;
+            trailLimits[decisionLevel++] = trailSize;
+            assign(decision, null);
+        }
+    }
+
+    /**
+     * Adds a clause from the lazy constraint during the search.
+     * The clause is kept like an original clause. A unit clause assigns its last literal.
+     * @return the clause if all its literals are false, after backjumping to the highest level among them
+     */
+    private Clause addLazyClause(int[] literals) {
+        int[] sorted = literals.clone();
+        // Literals which are not false first, then false literals from the highest level
+        for(int i = 1; i < sorted.length; i++) {
+            int literal = sorted[i];
+            int j = i;
+            while(j > 0 && lazyOrder(sorted[j - 1]) < lazyOrder(literal)) {
+                sorted[j] = sorted[j - 1];
+                j--;
+            }
+            sorted[j] = literal;
+        }
+        if(sorted.length == 1) {
+            cancelUntil(0);
+            if(value(sorted[0]) == FALSE) {
+                satisfiable = false;
+            } else if(value(sorted[0]) == UNDEFINED) {
+                assign(sorted[0], null);
+            }
+            return null;
+        }
+        Clause clause = new Clause(sorted, false);
+        clauses.add(clause);
+        attach(clause);
+        if(value(sorted[0]) != FALSE) {
+            if(value(sorted[0]) == UNDEFINED && value(sorted[1]) == FALSE) assign(sorted[0], clause);
+            return null;
+        }
+        int level = levels[sorted[0] >> 1];
+        if(level == 0) {
+            satisfiable = false;
+            return null;
+        }
+        cancelUntil(level);
+        return clause;
+    }
+
+    /**
+     * Order of literals in a clause from the lazy constraint, higher first.
+     */
+    private int lazyOrder(int literal) {
+        return value(literal) == FALSE ? levels[literal >> 1] : Integer.MAX_VALUE;
+    }
+
+    private byte value(int literal) {
+        byte value = values[literal >> 1];
+        return (literal & 1) == 0 ? value : (byte) -value;
+    }
+
+    private void assign(int literal, Clause reason) {
+        int variable = literal >> 1;
+        values[variable] = (literal & 1) == 0 ? TRUE : FALSE;
+        levels[variable] = decisionLevel;
+        reasons[variable] = reason;
+        trail[trailSize++] = literal;
+    }
+
+    private void attach(Clause clause) {
+        watch(clause.literals[0], clause);
+        watch(clause.literals[1], clause);
+    }
+
+    private void watch(int literal, Clause clause) {
+        Clause[] list = watches[literal];
+        if(watchCounts[literal] == list.length) list = watches[literal] = Arrays.copyOf(list, list.length * 2);
+        list[watchCounts[literal]++] = clause;
+    }
+
+    /**
+     * Propagates the assigned literals which were not propagated yet.
+     * @return a clause with all literals false, null if there is none
+     */
+    private Clause propagate() {
+        while(propagationHead < trailSize) {
+            int falseLiteral = trail[propagationHead++] ^ 1;
+            Clause[] list = watches[falseLiteral];
+            int count = watchCounts[falseLiteral];
+            int kept = 0;
+            for(int i = 0; i < count; i++) {
+                Clause clause = list[i];
+                if(clause.deleted) continue;
+                int[] literals = clause.literals;
+                if(literals[0] == falseLiteral) {
+                    literals[0] = literals[1];
+                    literals[1] = falseLiteral;
+                }
+                if(value(literals[0]) == TRUE) {
+                    list[kept++] = clause;
+                    continue;
+                }
+                boolean moved = false;
+                for(int k = 2; k < literals.length; k++) {
+                    if(value(literals[k]) != FALSE) {
+                        literals[1] = literals[k];
+                        literals[k] = falseLiteral;
+                        watch(literals[1], clause);
+                        moved = true;
+                        break;
+                    }
+                }
+                if(moved) continue;
+                list[kept++] = clause;
+                if(value(literals[0]) == FALSE) {
+                    while(++i < count) list[kept++] = list[i];
+                    watchCounts[falseLiteral] = kept;
+                    propagationHead = trailSize;
+                    return clause;
+                }
+                assign(literals[0], clause);
+            }
+            watchCounts[falseLiteral] = kept;
+        }
+        return null;
+    }
+
+    /**
+     * Analyzes a conflict to the first unique implication point, backjumps and adds the learnt clause.
+     */
+    private void learn(Clause conflict) {
+        int[] learnt = new int[decisionLevel + 1];
+        int learntSize = 1;
+        int pathCount = 0;
+        int literal = -1;
+        int index = trailSize - 1;
+        Clause clause = conflict;
+        do {
+            if(clause.learnt) bumpClause(clause);
+            for(int j = literal == -1 ? 0 : 1; j < clause.literals.length; j++) {
+                int q = clause.literals[j];
+                int v = q >> 1;
+                if(seen[v] || levels[v] == 0) continue;
+                seen[v] = true;
+                bumpVariable(v);
+                if(levels[v] >= decisionLevel) {
+                    pathCount++;
+                } else {
+                    if(learntSize == learnt.length) learnt = Arrays.copyOf(learnt, learnt.length * 2);
+                    learnt[learntSize++] = q;
+                }
+            }
+            while(!seen[trail[index] >> 1]) index--;
+            literal = trail[index--];
+            clause = reasons[literal >> 1];
+            seen[literal >> 1] = false;
+            pathCount--;
+        } while(pathCount > 0);
+        learnt[0] = literal ^ 1;
+
+        // Drop literals implied by other literals of the clause
+        int[] analyzed = Arrays.copyOf(learnt, learntSize);
+        int size = 1;
+        for(int i = 1; i < learntSize; i++) {
+            if(!isRedundant(analyzed[i])) learnt[size++] = analyzed[i];
+        }
+        for(int i = 1; i < learntSize; i++) seen[analyzed[i] >> 1] = false;
+
+        int backjumpLevel = 0;
+        if(size > 1) {
+            int max = 1;
+            for(int i = 2; i < size; i++) {
+                if(levels[learnt[i] >> 1] > levels[learnt[max] >> 1]) max = i;
+            }
+            int swap = learnt[1];
+            learnt[1] = learnt[max];
+            learnt[max] = swap;
+            backjumpLevel = levels[learnt[1] >> 1];
+        }
+        cancelUntil(backjumpLevel);
+        if(size == 1) {
+            assign(learnt[0], null);
+            return;
+        }
+        Clause added = new Clause(Arrays.copyOf(learnt, size), true);
+        learnts.add(added);
+        attach(added);
+        bumpClause(added);
+        assign(learnt[0], added);
+    }
+
+    /**
+     * A literal of a learnt clause is redundant if all other literals of its reason are in the clause.
+     */
+    private boolean isRedundant(int literal) {
+        Clause reason = reasons[literal >> 1];
+        if(reason == null) return false;
+        for(int j = 1; j < reason.literals.length; j++) {
+            int v = reason.literals[j] >> 1;
+            if(!seen[v] && levels[v] > 0) return false;
+        }
+        return true;
+    }
+
+    private void cancelUntil(int level) {
+        if(decisionLevel <= level) return;
+        int limit = trailLimits[level];
+        for(int i = trailSize - 1; i >= limit; i--) {
+            int variable = trail[i] >> 1;
+            phases[variable] = values[variable] == TRUE;
+            values[variable] = UNDEFINED;
+            reasons[variable] = null;
+            if(!heap.contains(variable)) heap.insert(variable);
+        }
+        trailSize = propagationHead = limit;
+        decisionLevel = level;
+    }
+
+    private int pickBranchLiteral() {
+        while(!heap.isEmpty()) {
+            int variable = heap.removeMax();
+            if(values[variable] == UNDEFINED) return literal(variable, phases[variable]);
+        }
+        return -1;
+    }
+
+    private void bumpVariable(int variable) {
+        if((activities[variable] += variableIncrement) > 1e100) {
+            for(int v = 0; v < variableCount; v++) activities[v] *= 1e-100;
+            variableIncrement *= 1e-100;
+        }
+        if(heap.contains(variable)) heap.increased(variable);
+    }
+
+    private void bumpClause(Clause clause) {
+        if((clause.activity += clauseIncrement) > 1e20) {
+            for(Clause c : learnts) c.activity *= 1e-20;
+            clauseIncrement *= 1e-20;
+        }
+    }
+
+    /**
+     * Deletes the less active half of the learnt clauses, except binary clauses and reasons of assignments.
+     * Deleted clauses are removed from the watch lists during propagation.
+     */
+    private void reduceLearnts() {
+        learnts.sort(Comparator.comparingDouble(c -> c.activity));
+        int half = learnts.size() / 2;
+        int kept = 0;
+        for(int i = 0; i < learnts.size(); i++) {
+            Clause clause = learnts.get(i);
+            int first = clause.literals[0];
+            boolean locked = reasons[first >> 1] == clause && value(first) == TRUE;
+            if(i < half && clause.literals.length > 2 && !locked) {
+                clause.deleted = true;
+            } else {
+                learnts.set(kept++, clause);
+            }
+        }
+        learnts.subList(kept, learnts.size()).clear();
+    }
+
+    /**
+     * Element i of the Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, ...
+     */
+    static long luby(int i) {
+        int size = 1;
+        int sequence = 0;
+        while(size < i + 1) {
+            sequence++;
+            size = 2 * size + 1;
+        }
+        while(size - 1 != i) {
+            size = (size - 1) >> 1;
+            sequence--;
+            i = i % size;
+        }
+        return 1L << sequence;
+    }
+
+    /**
+     * Binary max heap of variables ordered by activity.
+     */
+    private final class VariableHeap {
+        private int[] heap = new int[0];
+        private int[] positions = new int[0];
+        private int size = 0;
+
+        void grow(int capacity) {
+            int old = positions.length;
+            heap = Arrays.copyOf(heap, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            Arrays.fill(positions, old, capacity, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        boolean contains(int variable) {
+            return positions[variable] != -1;
+        }
+
+        void insert(int variable) {
+            heap[size] = variable;
+            positions[variable] = size;
+            up(size++);
+        }
+
+        void increased(int variable) {
+            up(positions[variable]);
+        }
+
+        int removeMax() {
+            int max = heap[0];
+            positions[max] = -1;
+            if(--size > 0) {
+                heap[0] = heap[size];
+                positions[heap[0]] = 0;
+                down(0);
+            }
+            return max;
+        }
+
+        private void up(int i) {
+            int variable = heap[i];
+            while(i > 0) {
+                int parent = (i - 1) >> 1;
+                if(activities[heap[parent]] >= activities[variable]) break;
+                heap[i] = heap[parent];
+                positions[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = variable;
+            positions[variable] = i;
+        }
+
+        private void down(int i) {
+            int variable = heap[i];
+            while(true) {
+                int child = 2 * i + 1;
+                if(child >= size) break;
+                if(child + 1 < size && activities[heap[child + 1]] > activities[heap[child]]) child++;
+                if(activities[heap[child]] <= activities[variable]) break;
+                heap[i] = heap[child];
+                positions[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = variable;
+            positions[variable] = i;
+        }
+    }
+}
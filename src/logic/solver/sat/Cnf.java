@@ -0,0 +1,81 @@
+package logic.solver.sat;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A formula in conjunctive normal form: a list of clauses over numbered variables.
+ * Literals are encoded like in the CdclSolver.
+ */
+public class Cnf {
+    private int variableCount = 0;
+    private final List<int[]> clauses = new ArrayList<>();
+    private final List<String> comments = new ArrayList<>();
+
+    public int newVariable() {
+        return variableCount++;
+    }
+
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    public int getClauseCount() {
+        return clauses.size();
+    }
+
+    public int[] getClause(int i) {
+        return clauses.get(i);
+    }
+
+    public void addClause(int... literals) {
+        clauses.add(literals);
+    }
+
+    /**
+     * Adds a comment written at the top of the DIMACS file.
+     */
+    public void addComment(String comment) {
+        comments.add(comment);
+    }
+
+    /**
+     * Adds the variables and clauses to a solver.
+     * @param solver
+     * @param fromClause index of the first clause to add, so clauses added later can be loaded incrementally
+     * @return false if the solver found the clauses unsatisfiable
+     */
+    public boolean loadInto(CdclSolver solver, int fromClause) {
+        solver.ensureVariables(variableCount);
+        boolean satisfiable = true;
+        for(int i = fromClause; i < clauses.size(); i++) {
+            satisfiable &= solver.addClause(clauses.get(i));
+        }
+        return satisfiable;
+    }
+
+    /**
+     * Writes the formula in DIMACS format. Variable v is written as v + 1, negative literals with a minus sign.
+     * @param writer
+     * @throws IOException
+     */
+    public void writeDimacs(Writer writer) throws IOException {
+        for(String comment : comments) {
+            writer.write("c " + comment + "\n");
+        }
+        writer.write("p cnf " + variableCount + " " + clauses.size() + "\n");
+        StringBuilder line = new StringBuilder();
+        for(int[] clause : clauses) {
+            line.setLength(0);
+            for(int literal : clause) {
+                int variable = CdclSolver.variable(literal) + 1;
+                line.append(CdclSolver.isPositive(literal) ? variable : -variable).append(' ');
+            }
+            line.append("0\n");
+            writer.write(line.toString());
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,100 @@
+package logic.solver.sat;
+
+import java.util.function.Consumer;
+
+import logic.solver.Puzzle;
+
+/**
+ * Keeps the white cells connected during the search of the CdclSolver.
+ *
+ * After each propagation, the cells which are not black are searched from a white cell w.
+ * If a cell c which is not black can't be reached, c must be black, or there is a conflict if c is white.
+ * The clause added says: if all black cells on the border B of the region of w (or of c, whichever is smaller) stay black,
+ * w or c is black. Any path from w to c crosses B, so the clause holds for all solutions.
+ */
+class ConnectivityConstraint implements CdclSolver.LazyConstraint {
+    private final Puzzle puzzle;
+    private final Consumer<int[]> clauseListener;
+
+    private final int[] mark;
+    private int stamp = 0;
+    private final int[] queue;
+    private final int[] border;
+
+    /**
+     * @param puzzle
+     * @param clauseListener called with every clause added
+     */
+    ConnectivityConstraint(Puzzle puzzle, Consumer<int[]> clauseListener) {
+        this.puzzle = puzzle;
+        this.clauseListener = clauseListener;
+        mark = new int[puzzle.N];
+        queue = new int[puzzle.N];
+        border = new int[puzzle.N];
+    }
+
+    @Override
+    public int[] check(CdclSolver solver) {
+        int root = -1;
+        for(int i = 0; i < puzzle.N && root == -1; i++) {
+            if(solver.isFalse(PuzzleEncoder.black(i))) root = i;
+        }
+        if(root == -1) return null;
+        int rootStamp = ++stamp;
+        int rootSize = fill(solver, root);
+
+        // Unreachable white cells are conflicts, unreachable unknown cells must be black
+        int unreached = -1;
+        for(int i = 0; i < puzzle.N; i++) {
+            if(mark[i] == rootStamp || solver.isTrue(PuzzleEncoder.black(i))) continue;
+            if(solver.isFalse(PuzzleEncoder.black(i))) {
+                unreached = i;
+                break;
+            }
+            if(unreached == -1) unreached = i;
+        }
+        if(unreached == -1) return null;
+
+        ++stamp;
+        int size = fill(solver, unreached);
+        int regionStamp = size < rootSize ? stamp : rootStamp;
+
+        int borderSize = 0;
+        for(int i = 0; i < puzzle.N; i++) {
+            if(mark[i] != regionStamp) continue;
+            for(int d = 0; d < 4; d++) {
+                int neighbour = puzzle.neighbour(i, d);
+                if(neighbour == -1 || mark[neighbour] == regionStamp || mark[neighbour] == -regionStamp) continue;
+                if(!solver.isTrue(PuzzleEncoder.black(neighbour))) continue;
+                mark[neighbour] = -regionStamp;
+                border[borderSize++] = neighbour;
+            }
+        }
+        int[] clause = new int[borderSize + 2];
+        for(int i = 0; i < borderSize; i++) clause[i] = PuzzleEncoder.white(border[i]);
+        clause[borderSize] = PuzzleEncoder.black(root);
+        clause[borderSize + 1] = PuzzleEncoder.black(unreached);
+        clauseListener.accept(clause);
+        return clause;
+    }
+
+    /**
+     * Marks the cells which are not black reachable from a cell with the current stamp.
+     * @return number of cells marked
+     */
+    private int fill(CdclSolver solver, int start) {
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        mark[start] = stamp;
+        while(head < tail) {
+            int cell = queue[head++];
+            for(int d = 0; d < 4; d++) {
+                int neighbour = puzzle.neighbour(cell, d);
+                if(neighbour == -1 || mark[neighbour] == stamp || solver.isTrue(PuzzleEncoder.black(neighbour))) continue;
+                mark[neighbour] = stamp;
+                queue[tail++] = neighbour;
+            }
+        }
+        return tail;
+    }
+}
@@ -0,0 +1,127 @@
+package logic.solver.sat;
+
+import java.util.Arrays;
+
+import logic.solver.Puzzle;
+
+/**
+ * Encodes the rules of a puzzle in CNF. Variable i is true if cell i is black.
+ *
+ * - Neighbouring cells are not both black: one binary clause per neighbouring pair.
+ * - A room with a clue has exactly that many black cells: sequential counters for at most clue black cells
+ *   and at most size - clue white cells, with auxiliary variables.
+ * - A white line doesn't cross 2 walls: for every two consecutive walls of a row or column,
+ *   one of the cells from the cell before the first wall to the cell after the second one is black.
+ * - White cells are connected: this would need too many clauses, so cut clauses are added lazily
+ *   during the search, see ConnectivityConstraint.
+ */
+public class PuzzleEncoder {
+    private final Puzzle puzzle;
+    private final Cnf cnf;
+
+    private PuzzleEncoder(Puzzle puzzle) {
+        this.puzzle = puzzle;
+        this.cnf = new Cnf();
+    }
+
+    public static Cnf encode(Puzzle puzzle) {
+        PuzzleEncoder encoder = new PuzzleEncoder(puzzle);
+        encoder.encode();
+        return encoder.cnf;
+    }
+
+    static int black(int cellIndex) {
+        return CdclSolver.literal(cellIndex, true);
+    }
+
+    static int white(int cellIndex) {
+        return CdclSolver.literal(cellIndex, false);
+    }
+
+    private void encode() {
+        cnf.addComment("Heyawake " + puzzle.width + "x" + puzzle.height + ", variable i + 1 is true if cell i (row major) is black");
+        for(int i = 0; i < puzzle.N; i++) cnf.newVariable();
+
+        for(int i = 0; i < puzzle.N; i++) {
+            // Right and bottom neighbours, so every pair is added once
+            for(int d = 2; d < 4; d++) {
+                int neighbour = puzzle.neighbour(i, d);
+                if(neighbour != -1) cnf.addClause(white(i), white(neighbour));
+            }
+        }
+
+        for(int r = 0; r < puzzle.getRoomCount(); r++) {
+            int clue = puzzle.clue(r);
+            if(clue < 0) continue;
+            int size = puzzle.roomSize(r);
+            int[] blacks = new int[size];
+            int[] whites = new int[size];
+            for(int i = 0; i < size; i++) {
+                blacks[i] = black(puzzle.roomMember(r, i));
+                whites[i] = white(puzzle.roomMember(r, i));
+            }
+            atMost(blacks, clue);
+            atMost(whites, size - clue);
+        }
+
+        for(int row = 0; row < puzzle.height; row++) {
+            int first = row * puzzle.width;
+            encodeLine(first, first + puzzle.width - 1, 1, true);
+        }
+        for(int column = 0; column < puzzle.width; column++) {
+            encodeLine(column, column + (puzzle.height - 1) * puzzle.width, puzzle.width, false);
+        }
+    }
+
+    /**
+     * Adds a clause for every two consecutive walls of a line.
+     */
+    private void encodeLine(int first, int last, int stride, boolean row) {
+        // Cells right after each wall of the line
+        int[] afterWall = new int[(last - first) / stride + 1];
+        int walls = 0;
+        for(int cell = first + stride; cell <= last; cell += stride) {
+            int segment = row ? puzzle.rowSegment(cell) : puzzle.columnSegment(cell);
+            int previous = row ? puzzle.rowSegment(cell - stride) : puzzle.columnSegment(cell - stride);
+            if(segment != previous) afterWall[walls++] = cell;
+        }
+        for(int w = 0; w + 1 < walls; w++) {
+            int start = afterWall[w] - stride;
+            int end = afterWall[w + 1];
+            int[] clause = new int[(end - start) / stride + 1];
+            for(int k = 0, cell = start; cell <= end; k++, cell += stride) {
+                clause[k] = black(cell);
+            }
+            cnf.addClause(clause);
+        }
+    }
+
+    /**
+     * Sequential counter encoding of: at most k of the literals are true.
+     * Auxiliary variable s(i, j) is true if at least j + 1 of the first i + 1 literals are true.
+     */
+    private void atMost(int[] literals, int k) {
+        int n = literals.length;
+        if(k >= n) return;
+        if(k == 0) {
+            for(int literal : literals) cnf.addClause(literal ^ 1);
+            return;
+        }
+        int[][] s = new int[n - 1][k];
+        for(int[] counter : s) {
+            for(int j = 0; j < k; j++) counter[j] = cnf.newVariable();
+        }
+        cnf.addClause(literals[0] ^ 1, CdclSolver.literal(s[0][0], true));
+        for(int j = 1; j < k; j++) cnf.addClause(CdclSolver.literal(s[0][j], false));
+        for(int i = 1; i < n - 1; i++) {
+            cnf.addClause(literals[i] ^ 1, CdclSolver.literal(s[i][0], true));
+            cnf.addClause(CdclSolver.literal(s[i - 1][0], false), CdclSolver.literal(s[i][0], true));
+            for(int j = 1; j < k; j++) {
+                cnf.addClause(literals[i] ^ 1, CdclSolver.literal(s[i - 1][j - 1], false), CdclSolver.literal(s[i][j], true));
+                cnf.addClause(CdclSolver.literal(s[i - 1][j], false), CdclSolver.literal(s[i][j], true));
+            }
+            cnf.addClause(literals[i] ^ 1, CdclSolver.literal(s[i - 1][k - 1], false));
+        }
+        cnf.addClause(literals[n - 1] ^ 1, CdclSolver.literal(s[n - 2][k - 1], false));
+    }
+}
@@ -0,0 +1,142 @@
+package logic.solver.sat;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import logic.gameobjects.Graph;
+import logic.solver.Puzzle;
+import logic.solver.Solution;
+import logic.solver.SolverBackend;
+
+/**
+ * Solves puzzles by encoding them in CNF and running the CdclSolver.
+ *
+ * Connectivity of white cells is not encoded up front. Cut clauses are added during the search
+ * whenever a white cell is cut off from the others, see ConnectivityConstraint.
+ * Cut clauses hold for every solution, so they are kept in the formula for later runs and DIMACS output.
+ * They only depend on which cells are adjacent, so they can also be passed on to a backend for a board of the same size.
+ * Solutions are counted by adding a clause excluding each solution found.
+ */
+public class SatBackend implements SolverBackend {
+    private final Puzzle puzzle;
+    private final Cnf cnf;
+
+    private final List<int[]> cutClauses = new ArrayList<>();
+    private long conflictCount;
+
+    public SatBackend(Graph graph) {
+        this(new Puzzle(graph));
+    }
+
+    public SatBackend(Puzzle puzzle) {
+        this(puzzle, Collections.emptyList());
+    }
+
+    /**
+     * @param puzzle
+     * @param knownCutClauses cut clauses found by a backend for a puzzle of the same size
+     */
+    public SatBackend(Puzzle puzzle, List<int[]> knownCutClauses) {
+        this.puzzle = puzzle;
+        this.cnf = PuzzleEncoder.encode(puzzle);
+        for(int[] clause : knownCutClauses) {
+            cnf.addClause(clause);
+            cutClauses.add(clause);
+        }
+    }
+
+    public Puzzle getPuzzle() {
+        return puzzle;
+    }
+
+    /**
+     * @return the encoding of the puzzle, with the cut clauses added so far
+     */
+    public Cnf getCnf() {
+        return cnf;
+    }
+
+    /**
+     * @return number of conflicts of the last run
+     */
+    public long getConflictCount() {
+        return conflictCount;
+    }
+
+    /**
+     * @return number of cut clauses added so far
+     */
+    public int getCutClauseCount() {
+        return cutClauses.size();
+    }
+
+    /**
+     * @return cut clauses added so far
+     */
+    public List<int[]> getCutClauses() {
+        return Collections.unmodifiableList(cutClauses);
+    }
+
+    @Override
+    public Solution solve() {
+        return solve(null);
+    }
+
+    /**
+     * Solves the puzzle trying the preferred colors first, e.g. random colors to get a random solution.
+     * @param preferredBlack color to try first for every cell, true for black
+     * @return a solution, or null if the puzzle has none
+     */
+    public Solution solve(boolean[] preferredBlack) {
+        List<Solution> solutions = findSolutions(1, preferredBlack);
+        return solutions.isEmpty() ? null : solutions.get(0);
+    }
+
+    @Override
+    public int countSolutions(int limit) {
+        return findSolutions(limit, null).size();
+    }
+
+    /**
+     * Searches solutions until limit solutions are found.
+     * @param limit maximum number of solutions to look for
+     * @param preferredBlack color to try first for every cell, null to try white first
+     * @return the solutions found
+     */
+    public List<Solution> findSolutions(int limit, boolean[] preferredBlack) {
+        CdclSolver solver = new CdclSolver();
+        boolean satisfiable = cnf.loadInto(solver, 0);
+        solver.setLazyConstraint(new ConnectivityConstraint(puzzle, clause -> {
+            cnf.addClause(clause);
+            cutClauses.add(clause);
+        }));
+        if(preferredBlack != null) {
+            for(int i = 0; i < puzzle.N; i++) solver.setPolarity(i, preferredBlack[i]);
+        }
+        List<Solution> solutions = new ArrayList<>();
+        while(satisfiable && solutions.size() < limit && solver.solve()) {
+            boolean[] black = solver.getModel();
+            solutions.add(new Solution(puzzle, black));
+            int[] blocking = new int[puzzle.N];
+            for(int i = 0; i < puzzle.N; i++) {
+                blocking[i] = CdclSolver.literal(i, !black[i]);
+            }
+            satisfiable = solver.addClause(blocking);
+        }
+        conflictCount = solver.getConflictCount();
+        return solutions;
+    }
+
+    /**
+     * Writes the encoding in DIMACS format. Connectivity is only encoded by the cut clauses found by earlier runs,
+     * so models of the formula may still have white cells which are not connected.
+     * @param writer
+     * @throws IOException
+     */
+    public void writeDimacs(Writer writer) throws IOException {
+        cnf.writeDimacs(writer);
+    }
+}
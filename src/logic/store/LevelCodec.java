@@ -0,0 +1,105 @@
+package logic.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import logic.gameobjects.Graph;
+import logic.gameobjects.Verdict;
+
+/**
+ * Compact binary encoding of one level: what the editor defines, without painted cells.
+ *
+ * Layout: width and height as varints, the verdict as one byte,
+ * one bit per edge which is set if the edge is a wall (in the order of Graph edges, least significant bit first),
+ * then the number of clues as a varint, and for every clue in row major order
+ * the number of cells skipped since the previous clue and the clue itself as varints.
+ * A 36x36 level with 200 rooms takes about 600 bytes.
+ */
+public class LevelCodec {
+    private LevelCodec() {}
+
+    public static byte[] encode(Graph graph) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(graph.getEdgeCount() / 8 + 16);
+        writeVarint(out, graph.width);
+        writeVarint(out, graph.height);
+        out.write(graph.getVerdict().ordinal());
+
+        int bits = 0;
+        int bitCount = 0;
+        for(int i = 0; i < graph.getEdgeCount(); i++) {
+            if((graph.getEdgeFlags(i) & Graph.WALL) != 0) bits |= 1 << bitCount;
+            if(++bitCount == 8) {
+                out.write(bits);
+                bits = 0;
+                bitCount = 0;
+            }
+        }
+        if(bitCount > 0) out.write(bits);
+
+        int clueCount = 0;
+        for(int i = 0; i < graph.N; i++) {
+            if(graph.getCell(i).blackCount != -1) clueCount++;
+        }
+        writeVarint(out, clueCount);
+        int previous = -1;
+        for(int i = 0; i < graph.N; i++) {
+            int clue = graph.getCell(i).blackCount;
+            if(clue == -1) continue;
+            writeVarint(out, i - previous - 1);
+            writeVarint(out, clue);
+            previous = i;
+        }
+        return out.toByteArray();
+    }
+
+    public static Graph decode(byte[] data) throws IOException {
+        int[] position = {0};
+        int width = readVarint(data, position);
+        int height = readVarint(data, position);
+        if(width < 1 || height < 1 || (long)width * height > Integer.MAX_VALUE / 2)
+            throw new IOException("Invalid board size: " + width + "x" + height);
+        Graph graph = new Graph(width, height);
+        int verdict = readByte(data, position);
+        if(verdict >= Verdict.values().length) throw new IOException("Invalid verdict: " + verdict);
+
+        int bits = 0;
+        for(int i = 0; i < graph.getEdgeCount(); i++) {
+            if(i % 8 == 0) bits = readByte(data, position);
+            if((bits & (1 << (i % 8))) != 0) graph.setEdgeFlags(i, Graph.WALL);
+        }
+
+        int clueCount = readVarint(data, position);
+        int cell = -1;
+        for(int i = 0; i < clueCount; i++) {
+            cell += readVarint(data, position) + 1;
+            if(cell >= graph.N) throw new IOException("Clue outside of the board");
+            graph.setBlackCount(cell, readVarint(data, position));
+        }
+        if(position[0] != data.length) throw new IOException("Trailing bytes after level");
+        graph.setVerdict(Verdict.values()[verdict]);
+        return graph;
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] position) throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            int b = readByte(data, position);
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Varint too long");
+    }
+
+    private static int readByte(byte[] data, int[] position) throws IOException {
+        if(position[0] >= data.length) throw new IOException("Level truncated");
+        return data[position[0]++] & 0xFF;
+    }
+}
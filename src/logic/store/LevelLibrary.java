@@ -0,0 +1,133 @@
+package logic.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import logic.gameobjects.Graph;
+
+/**
+ * Read-only view of a level store for random access.
+ *
+ * The data and index files are memory mapped, so opening takes the same time however many levels there are,
+ * and nothing is read until a level is asked for. Decoded levels are kept in an LRU cache of bounded size.
+ * Levels appended after the library was opened are not seen, and records which were written but not indexed
+ * when a writer stopped are ignored until a LevelStore opens the files and repairs them.
+ * Files larger than 2 GB can't be mapped as one buffer and are not supported.
+ */
+public class LevelLibrary implements Closeable {
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    private final FileChannel dataChannel;
+    private final MappedByteBuffer data;
+    private final LongBuffer offsets;
+    private final int count;
+
+    private final Map<Integer, Graph> cache;
+
+    /**
+     * @param file data file of a level store
+     * @param cacheSize maximum number of decoded levels kept
+     */
+    public LevelLibrary(File file, int cacheSize) throws IOException {
+        if(cacheSize < 1) throw new IllegalArgumentException("Invalid cache size: " + cacheSize);
+        dataChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try(FileChannel indexChannel = FileChannel.open(LevelStore.indexFile(file).toPath(), StandardOpenOption.READ)) {
+            long dataSize = dataChannel.size();
+            long indexSize = indexChannel.size();
+            if(dataSize > Integer.MAX_VALUE || indexSize > Integer.MAX_VALUE) throw new IOException("Level store too large to map: " + file);
+            data = dataChannel.map(FileChannel.MapMode.READ_ONLY, 0, dataSize);
+            ByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexSize);
+            checkHeader(data, LevelStore.DATA_MAGIC, file);
+            checkHeader(index, LevelStore.INDEX_MAGIC, file);
+            offsets = index.position(LevelStore.HEADER_SIZE).slice().asLongBuffer();
+
+            // An index entry may have been written without its record if the files were copied separately
+            int entries = offsets.limit();
+            while(entries > 0 && !recordFits(offsets.get(entries - 1), dataSize)) entries--;
+            count = entries;
+        } catch (IOException | RuntimeException e) {
+            dataChannel.close();
+            throw e;
+        }
+        cache = new LinkedHashMap<Integer, Graph>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Graph> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @return number of levels
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns a level from the cache, decoding it if it isn't there.
+     * The graph is shared by all callers and must not be changed, use load to get a copy which can be played or edited.
+     * @param i index of the level, 0 <= i < size()
+     */
+    public synchronized Graph get(int i) throws IOException {
+        Graph graph = cache.get(i);
+        if(graph == null) {
+            graph = load(i);
+            cache.put(i, graph);
+        }
+        return graph;
+    }
+
+    /**
+     * Decodes a level without using the cache.
+     * @param i index of the level, 0 <= i < size()
+     * @return a new graph
+     * @throws IOException if the record of the level is outside of the data file, too large or damaged
+     */
+    public Graph load(int i) throws IOException {
+        if(i < 0 || i >= count) throw new IndexOutOfBoundsException("Level " + i + " of " + count);
+        long offset = offsets.get(i);
+        if(offset < LevelStore.HEADER_SIZE || offset + LevelStore.RECORD_OVERHEAD > data.limit()) throw new IOException("Level " + i + " is damaged");
+        int length = data.getInt((int)offset);
+        if(length < 0 || length > LevelStore.MAX_RECORD_SIZE || offset + LevelStore.RECORD_OVERHEAD + length > data.limit())
+            throw new IOException("Level " + i + " is damaged");
+        byte[] payload = new byte[length];
+        data.get((int)offset + 4, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if(data.getInt((int)offset + 4 + length) != (int)crc.getValue()) throw new IOException("Level " + i + " is damaged");
+        return LevelCodec.decode(payload);
+    }
+
+    /**
+     * @return number of decoded levels in the cache
+     */
+    public synchronized int getCachedCount() {
+        return cache.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataChannel.close();
+    }
+
+    private boolean recordFits(long offset, long dataSize) {
+        if(offset < LevelStore.HEADER_SIZE || offset + LevelStore.RECORD_OVERHEAD > dataSize) return false;
+        int length = data.getInt((int)offset);
+        return length >= 0 && length <= LevelStore.MAX_RECORD_SIZE && offset + LevelStore.RECORD_OVERHEAD + length <= dataSize;
+    }
+
+    private static void checkHeader(ByteBuffer buffer, int magic, File file) throws IOException {
+        if(buffer.limit() < LevelStore.HEADER_SIZE || buffer.getInt(0) != magic) throw new IOException("Not a level store: " + file);
+        if(buffer.getInt(4) != LevelStore.VERSION) throw new IOException("Unsupported level store version " + buffer.getInt(4) + ": " + file);
+    }
+}
@@ -0,0 +1,315 @@
+package logic.store;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import logic.gameobjects.Graph;
+
+/**
+ * Append-only file of levels encoded by the LevelCodec, with an index of record offsets next to it.
+ *
+ * The data file starts with a header (magic number and format version), followed by records:
+ * the length of the level, the encoded level and the CRC32 of the encoded level.
+ * The index file starts with its own header, followed by the offset of every record as a long.
+ *
+ * Appending writes the records at the end of the data file and forces them to disk before the index entries are written
+ * and forced, so an index entry never points to a record which isn't on disk. When a store is opened,
+ * index entries of invalid records and an incomplete last index entry are dropped, records after the last indexed one
+ * are indexed if their CRC matches, and the data file is cut at the first broken record.
+ * A crash while appending loses at most the levels being appended. The index can always be rebuilt from the data file.
+ */
+public class LevelStore implements Closeable {
+    static final int DATA_MAGIC = 0x4859_4C44;
+    static final int INDEX_MAGIC = 0x4859_4C49;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    /**
+     * Length before and CRC after each encoded level
+     */
+    static final int RECORD_OVERHEAD = 8;
+    static final int MAX_RECORD_SIZE = 1 << 26;
+
+    private final File file;
+    private final FileChannel data;
+    private final FileChannel index;
+
+    private long[] offsets = new long[16];
+    private int count = 0;
+    private long dataEnd = HEADER_SIZE;
+
+    /**
+     * Opens a store, or creates it if the file doesn't exist, and recovers from an interrupted append.
+     * @param file data file, the index is kept in the same path with .idx appended
+     */
+    public LevelStore(File file) throws IOException {
+        this.file = file;
+        data = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            index = FileChannel.open(indexFile(file).toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+        try {
+            FileLock lock = data.lock();
+            try {
+                initHeader(data, DATA_MAGIC);
+                initHeader(index, INDEX_MAGIC);
+                refresh(0);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public static File indexFile(File file) {
+        return new File(file.getPath() + ".idx");
+    }
+
+    /**
+     * @return true if the file starts like a level store
+     */
+    public static boolean isStore(File file) {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            return channel.read(header, 0) == 4 && header.getInt(0) == DATA_MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return number of levels
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Reads one level.
+     * @param i index of the level, 0 <= i < size()
+     */
+    public synchronized Graph read(int i) throws IOException {
+        if(i < 0 || i >= count) throw new IndexOutOfBoundsException("Level " + i + " of " + count);
+        byte[] payload = readRecord(offsets[i]);
+        if(payload == null) throw new IOException("Level " + i + " is damaged");
+        return LevelCodec.decode(payload);
+    }
+
+    /**
+     * @return all levels in order
+     */
+    public synchronized List<Graph> readAll() throws IOException {
+        List<Graph> graphs = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) graphs.add(read(i));
+        return graphs;
+    }
+
+    public void append(Graph graph) throws IOException {
+        appendAll(List.of(graph));
+    }
+
+    /**
+     * Appends levels with one write and one sync of each file, independently of the size of the store.
+     * Only levels appended by others since the last append are read, so keep the store open to append often.
+     * Other processes appending to the same files wait for the lock.
+     */
+    public synchronized void appendAll(List<Graph> graphs) throws IOException {
+        if(graphs.isEmpty()) return;
+        FileLock lock = data.lock();
+        try {
+            // Another process may have appended since the last look
+            refresh(count);
+            List<byte[]> payloads = new ArrayList<>(graphs.size());
+            int size = 0;
+            for(Graph graph : graphs) {
+                byte[] payload = LevelCodec.encode(graph);
+                payloads.add(payload);
+                size += payload.length + RECORD_OVERHEAD;
+            }
+            ByteBuffer records = ByteBuffer.allocate(size);
+            ByteBuffer entries = ByteBuffer.allocate(8 * graphs.size());
+            long offset = dataEnd;
+            CRC32 crc = new CRC32();
+            for(byte[] payload : payloads) {
+                entries.putLong(offset);
+                crc.reset();
+                crc.update(payload);
+                records.putInt(payload.length).put(payload).putInt((int)crc.getValue());
+                offset += payload.length + RECORD_OVERHEAD;
+            }
+            records.flip();
+            entries.flip();
+            writeFully(data, records, dataEnd);
+            data.force(false);
+            writeFully(index, entries, HEADER_SIZE + 8L * count);
+            index.force(false);
+
+            entries.rewind();
+            for(int i = 0; i < graphs.size(); i++) addOffset(entries.getLong());
+            dataEnd = offset;
+        } finally {
+            lock.release();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Reads the index entries after the known ones and repairs the files after an interrupted append. Must hold the lock.
+     * Takes constant time if nobody else changed the files since the known entries were read.
+     * @param known number of index entries which were already read, 0 to read the whole index
+     */
+    private void refresh(int known) throws IOException {
+        long indexSize = index.size();
+        if(indexSize == HEADER_SIZE + 8L * count && data.size() == dataEnd) return;
+        int entryCount = (int)((indexSize - HEADER_SIZE) / 8);
+        // The files were replaced or cut by someone else, start over
+        if(entryCount < known) known = 0;
+        ByteBuffer entries = ByteBuffer.allocate(8 * (entryCount - known));
+        readFully(index, entries, HEADER_SIZE + 8L * known);
+        entries.flip();
+        count = known;
+        for(int i = known; i < entryCount; i++) addOffset(entries.getLong());
+
+        // Entries of records which didn't make it to disk, only possible if the files were copied separately
+        while(count > 0 && readRecord(offsets[count - 1]) == null) count--;
+        dataEnd = count == 0 ? HEADER_SIZE : offsets[count - 1] + RECORD_OVERHEAD + recordLength(offsets[count - 1]);
+
+        // Records written before the process stopped, but not yet indexed
+        int indexed = count;
+        while(true) {
+            if(readRecord(dataEnd) == null) break;
+            addOffset(dataEnd);
+            dataEnd += RECORD_OVERHEAD + recordLength(dataEnd);
+        }
+        if(data.size() > dataEnd) {
+            data.truncate(dataEnd);
+            data.force(false);
+        }
+        if(count != indexed || indexSize != HEADER_SIZE + 8L * count) {
+            ByteBuffer recovered = ByteBuffer.allocate(8 * (count - indexed));
+            for(int i = indexed; i < count; i++) recovered.putLong(offsets[i]);
+            recovered.flip();
+            index.truncate(HEADER_SIZE + 8L * indexed);
+            writeFully(index, recovered, HEADER_SIZE + 8L * indexed);
+            index.force(false);
+        }
+    }
+
+    private void addOffset(long offset) {
+        if(count == offsets.length) offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+        offsets[count++] = offset;
+    }
+
+    private int recordLength(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(data, length, offset);
+        return length.getInt(0);
+    }
+
+    /**
+     * @return the encoded level of the record at the offset, or null if the record is incomplete or its CRC doesn't match
+     */
+    private byte[] readRecord(long offset) throws IOException {
+        long size = data.size();
+        if(offset < HEADER_SIZE || offset + RECORD_OVERHEAD > size) return null;
+        int length = recordLength(offset);
+        if(length < 0 || length > MAX_RECORD_SIZE || offset + RECORD_OVERHEAD + length > size) return null;
+        ByteBuffer record = ByteBuffer.allocate(length + 4);
+        readFully(data, record, offset + 4);
+        byte[] payload = Arrays.copyOf(record.array(), length);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return record.getInt(length) == (int)crc.getValue() ? payload : null;
+    }
+
+    /**
+     * Writes the header to an empty file, checks it otherwise.
+     */
+    private void initHeader(FileChannel channel, int magic) throws IOException {
+        if(channel.size() < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(magic).putInt(VERSION);
+            header.flip();
+            channel.truncate(0);
+            writeFully(channel, header, 0);
+            channel.force(false);
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        if(header.getInt(0) != magic) throw new IOException("Not a level store: " + file);
+        if(header.getInt(4) != VERSION) throw new IOException("Unsupported level store version " + header.getInt(4) + ": " + file);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if(read < 0) throw new EOFException();
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) position += channel.write(buffer, position);
+    }
+
+    /**
+     * Reads a list of graphs written with ObjectOutputStream, the level file format before the store.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Graph> readSerialized(File file) throws IOException {
+        try(ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+            return (List<Graph>)ois.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Not a level file: " + file, e);
+        }
+    }
+
+    /**
+     * Creates a store with the levels of a serialized level file.
+     * The store is written next to the target and moved in place when complete, so a crash leaves no half migrated store.
+     * @param serialized level file written with ObjectOutputStream
+     * @param target data file of the new store, must not exist
+     */
+    public static void migrate(File serialized, File target) throws IOException {
+        List<Graph> graphs = readSerialized(serialized);
+        File temporary = new File(target.getPath() + ".tmp");
+        Files.deleteIfExists(temporary.toPath());
+        Files.deleteIfExists(indexFile(temporary).toPath());
+        try(LevelStore store = new LevelStore(temporary)) {
+            store.appendAll(graphs);
+        }
+        // The index is moved first, a data file without its index is reindexed when opened
+        Files.move(indexFile(temporary).toPath(), indexFile(target).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+}